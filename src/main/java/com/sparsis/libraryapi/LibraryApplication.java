@@ -1,6 +1,11 @@
 package com.sparsis.libraryapi;
 
-import org.modelmapper.ModelMapper;
+import com.sparsis.libraryapi.api.mapper.BookMapper;
+import com.sparsis.libraryapi.api.mapper.BookMapperImpl;
+import com.sparsis.libraryapi.api.mapper.TimedBookMapper;
+import com.sparsis.libraryapi.api.metrics.RequestMetricsFilter;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
@@ -9,8 +14,18 @@ import org.springframework.context.annotation.Bean;
 public class LibraryApplication {
 
 	@Bean
-	public ModelMapper getModelMapper() {
-		return new ModelMapper();
+	public BookMapper getBookMapper(MeterRegistry registry) {
+		return new TimedBookMapper(new BookMapperImpl(), registry);
+	}
+
+	@Bean
+	public TimedAspect getTimedAspect(MeterRegistry registry) {
+		return new TimedAspect(registry);
+	}
+
+	@Bean
+	public RequestMetricsFilter getRequestMetricsFilter(MeterRegistry registry) {
+		return new RequestMetricsFilter(registry);
 	}
 
 	public static void main(String[] args) {
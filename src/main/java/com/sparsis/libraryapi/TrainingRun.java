@@ -0,0 +1,31 @@
+package com.sparsis.libraryapi;
+
+import com.sparsis.libraryapi.api.dto.BookDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Saves and reads back one book through the API once the application is ready, then exits. The fast-start build
+ * runs the application this way to record the classes a real start and first request load, which then go into
+ * the class-data-sharing archive. Only enabled with {@code library.training-run=true}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "library.training-run", havingValue = "true")
+public class TrainingRun {
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void run(ApplicationReadyEvent event) {
+        String url = "http://localhost:" + event.getApplicationContext().getEnvironment().getProperty("local.server.port") + "/api/books";
+        RestTemplate restTemplate = new RestTemplate();
+        BookDTO book = restTemplate.postForObject(url, BookDTO.builder().title("title").author("author").isbn("9780306406157").build(), BookDTO.class);
+        restTemplate.getForObject(url + "/{id}", BookDTO.class, book.getId());
+        log.info("Training run completed");
+        System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
@@ -0,0 +1,111 @@
+package com.sparsis.libraryapi.api.controller;
+
+import com.sparsis.libraryapi.api.dto.BookChangeDTO;
+import com.sparsis.libraryapi.api.dto.BookChangesDTO;
+import com.sparsis.libraryapi.model.entity.BookChange;
+import com.sparsis.libraryapi.service.BookChangeFeed;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Change feed of the books, so consumers follow changes instead of re-reading the list. Consumers keep the
+ * sequence number of the last change they processed and resume after it; without one, they start from now.
+ * A position whose following changes were already purged is answered with 410 Gone: the consumer has to read
+ * the books again and follow from now.
+ */
+@ConditionalOnProperty(name = "library.changes.enabled", havingValue = "true")
+@RequestMapping("/api/books/changes")
+@RestController
+public class BookChangeController {
+
+    @Autowired
+    private BookChangeFeed feed;
+
+    @Value("${library.changes.max-batch:100}")
+    private int maxBatch;
+
+    @Value("${library.changes.long-poll-timeout:30s}")
+    private Duration longPollTimeout;
+
+    @Value("${library.changes.stream-timeout:5m}")
+    private Duration streamTimeout;
+
+    /**
+     * Long poll: answers at once when there are changes after {@code since}, otherwise as soon as the next ones
+     * commit, or with an empty batch after the long poll timeout.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<BookChangesDTO> poll(@RequestParam(required = false) Long since) {
+        long position = position(since);
+        DeferredResult<BookChangesDTO> result = new DeferredResult<>(longPollTimeout.toMillis(), batch(position, Collections.emptyList()));
+        List<BookChange> changes = feed.read(position, maxBatch);
+        if(!changes.isEmpty()) {
+            result.setResult(batch(position, changes));
+            return result;
+        }
+        BookChangeFeed.Subscription subscription = feed.subscribe(position, maxBatch, batch -> {
+            result.setResult(batch(position, batch));
+            return false;
+        });
+        result.onCompletion(subscription::cancel);
+        return result;
+    }
+
+    /**
+     * Server-Sent Events: every batch is a "changes" event whose id is the sequence number to resume from, so a
+     * reconnecting EventSource continues through its Last-Event-ID header. The stream ends after the stream
+     * timeout and is expected to be reopened.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(required = false) Long since,
+                             @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+        long position = position(lastEventId != null ? lastEventId : since);
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        BookChangeFeed.Subscription subscription = feed.subscribe(position, maxBatch, batch -> {
+            BookChangesDTO changes = batch(position, batch);
+            try {
+                emitter.send(SseEmitter.event().id(Long.toString(changes.getNext())).name("changes").data(changes, MediaType.APPLICATION_JSON));
+                return true;
+            } catch(IOException ex) {
+                // The client went away; the container completes the emitter
+                return false;
+            }
+        });
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> subscription.cancel());
+        return emitter;
+    }
+
+    private long position(Long since) {
+        if(since == null) {
+            return feed.lastSeq();
+        }
+        if(feed.isExpired(since)) {
+            throw new ResponseStatusException(HttpStatus.GONE, "Changes after " + since + " are no longer available");
+        }
+        return since;
+    }
+
+    private static BookChangesDTO batch(long since, List<BookChange> changes) {
+        long next = changes.isEmpty() ? since : changes.get(changes.size() - 1).getSeq();
+        return new BookChangesDTO(changes.stream().map(BookChangeDTO::of).collect(Collectors.toList()), next);
+    }
+}
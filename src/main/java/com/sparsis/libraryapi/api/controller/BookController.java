@@ -1,94 +1,492 @@
 package com.sparsis.libraryapi.api.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sparsis.libraryapi.api.converter.BookPageWebConfiguration;
 import com.sparsis.libraryapi.api.dto.BookDTO;
+import com.sparsis.libraryapi.api.dto.BookImportResultDTO;
+import com.sparsis.libraryapi.api.dto.BookLookupDTO;
+import com.sparsis.libraryapi.api.dto.BookPage;
 import com.sparsis.libraryapi.api.exception.ApiErrors;
+import com.sparsis.libraryapi.api.mapper.BookMapper;
 import com.sparsis.libraryapi.exception.BusinessException;
 import com.sparsis.libraryapi.model.entity.Book;
+import com.sparsis.libraryapi.service.BookSaveResult;
 import com.sparsis.libraryapi.service.BookService;
-import org.modelmapper.ModelMapper;
+import com.sparsis.libraryapi.service.BookWriteCoalescer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @RequestMapping("/api/books")
 @RestController
 public class BookController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
+    private static final String CSV = "text/csv";
+
+    /**
+     * Formats of single books and lookups, JSON first as the default.
+     */
+    private static final MediaType[] BOOK_FORMATS = {MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, BookPageWebConfiguration.APPLICATION_SMILE};
+
     @Autowired
     private BookService service;
 
+    @Autowired(required = false)
+    private BookWriteCoalescer writeCoalescer;
+
+    @Autowired
+    private BookMapper bookMapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Autowired
-    private ModelMapper modelMapper;
+    private Validator validator;
+
+    @Value("${library.import.chunk-size:500}")
+    private int importChunkSize;
+
+    @Value("${library.search.max-results:100}")
+    private int maxSearchResults;
+
+    @Value("${library.lookup.max-ids:200}")
+    private int maxLookupIds;
 
+    /**
+     * A new book always starts at the first version; a version in the body would seed the optimistic lock.
+     */
     @PostMapping
     public ResponseEntity<BookDTO> create(@RequestBody @Valid BookDTO bookDTO) {
-        Book book = modelMapper.map(bookDTO, Book.class);
-        Book savedResource = service.save(book);
-        BookDTO responseDTO = modelMapper.map(savedResource, BookDTO.class);
+        bookDTO.setVersion(null);
+        Book book = bookMapper.toEntity(bookDTO);
+        Book savedResource = writeCoalescer == null ? service.save(book) : writeCoalescer.save(book);
+        BookDTO responseDTO = bookMapper.toDTO(savedResource);
         URI uri = ServletUriComponentsBuilder.fromCurrentContextPath().path("/api/books/{id}").buildAndExpand(responseDTO.getId()).toUri();
 
         return ResponseEntity.created(uri).body(responseDTO);
     }
 
+    /**
+     * Accepts either a JSON array or newline-delimited JSON and answers one result per record, in input order: as
+     * NDJSON, or as a JSON array when JSON is preferred. Records are read one at a time, saved in chunks and
+     * answered chunk by chunk, so neither the payload nor the results are held in memory as a whole. A malformed
+     * NDJSON line only fails that record; a malformed JSON array ends the import, and the error says from which
+     * index on the records were not processed.
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON}, produces = {NDJSON, MediaType.APPLICATION_JSON_VALUE})
+    public void createAll(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        MediaType responseType = negotiate(request.getHeader(HttpHeaders.ACCEPT), MediaType.valueOf(NDJSON), MediaType.APPLICATION_JSON);
+        response.setContentType(responseType.toString());
+
+        ObjectWriter resultWriter = objectMapper.writerFor(BookImportResultDTO.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try(SequenceWriter writer = responseType.equals(MediaType.APPLICATION_JSON)
+                ? resultWriter.writeValuesAsArray(response.getOutputStream())
+                : resultWriter.withRootValueSeparator("\n").writeValues(response.getOutputStream())) {
+            BookImport bookImport = new BookImport(writer);
+            if(MediaType.valueOf(NDJSON).isCompatibleWith(MediaType.valueOf(request.getContentType()))) {
+                importLines(request.getInputStream(), bookImport);
+            } else {
+                importArray(request.getInputStream(), bookImport);
+            }
+            bookImport.finish();
+        }
+    }
+
+    private void importLines(InputStream body, BookImport bookImport) throws IOException {
+        ObjectReader reader = objectMapper.readerFor(BookDTO.class);
+        BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        for(String line = lines.readLine(); line != null; line = lines.readLine()) {
+            if(line.isBlank()) {
+                continue;
+            }
+            try {
+                bookImport.add(reader.readValue(line));
+            } catch(JsonProcessingException ex) {
+                bookImport.reject(Collections.singletonList("Malformed JSON record"));
+            }
+        }
+    }
+
+    private void importArray(InputStream body, BookImport bookImport) throws IOException {
+        try(MappingIterator<BookDTO> records = objectMapper.readerFor(BookDTO.class).readValues(body)) {
+            while(records.hasNextValue()) {
+                bookImport.add(records.nextValue());
+            }
+        } catch(JsonProcessingException ex) {
+            bookImport.reject(Collections.singletonList("Malformed JSON record; this and all later records were not processed"));
+        }
+    }
+
+    /**
+     * Results of the records read since the last chunk was saved, in input order. They are written out once the
+     * chunk is saved, so at most {@code chunk-size} results wait at a time.
+     */
+    private class BookImport {
+
+        private final SequenceWriter writer;
+
+        private final List<BookImportResultDTO.BookImportResultDTOBuilder> results = new ArrayList<>(importChunkSize);
+
+        private final List<Book> chunk = new ArrayList<>(importChunkSize);
+
+        private int index;
+
+        private BookImport(SequenceWriter writer) {
+            this.writer = writer;
+        }
+
+        private void add(BookDTO bookDTO) throws IOException {
+            Set<ConstraintViolation<BookDTO>> violations = validator.validate(bookDTO);
+            if(!violations.isEmpty()) {
+                reject(violations.stream().map(violation -> violation.getPropertyPath() + " " + violation.getMessage()).collect(Collectors.toList()));
+                return;
+            }
+            bookDTO.setVersion(null);
+            chunk.add(bookMapper.toEntity(bookDTO));
+            results.add(BookImportResultDTO.builder().index(index++));
+            if(results.size() == importChunkSize) {
+                flush();
+            }
+        }
+
+        private void reject(List<String> errors) throws IOException {
+            results.add(BookImportResultDTO.builder().index(index++).errors(errors));
+            if(results.size() == importChunkSize) {
+                flush();
+            }
+        }
+
+        private void finish() throws IOException {
+            flush();
+        }
+
+        private void flush() throws IOException {
+            List<BookSaveResult> saveResults = chunk.isEmpty() ? Collections.emptyList() : service.saveAll(chunk);
+            int saved = 0;
+            for(BookImportResultDTO.BookImportResultDTOBuilder result : results) {
+                BookImportResultDTO dto = result.build();
+                if(dto.getErrors() == null) {
+                    BookSaveResult saveResult = saveResults.get(saved++);
+                    if(saveResult.isSaved()) {
+                        dto.setId(saveResult.getBook().getId());
+                    } else {
+                        dto.setErrors(Collections.singletonList(saveResult.getError()));
+                    }
+                }
+                writer.write(dto);
+            }
+            writer.flush();
+            results.clear();
+            chunk.clear();
+        }
+    }
+
+    private static MediaType bookFormat(String accept) {
+        return negotiate(accept, BOOK_FORMATS);
+    }
+
+    /**
+     * The first of {@code offered} that the Accept header prefers, or the first one when there is no Accept header.
+     * Only called for types the mapping's {@code produces} already matched.
+     */
+    private static MediaType negotiate(String accept, MediaType... offered) {
+        List<MediaType> accepted = accept == null ? Collections.emptyList() : MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for(MediaType type : accepted) {
+            for(MediaType candidate : offered) {
+                if(type.includes(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return offered[0];
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<BookDTO> find(@PathVariable Long id) {
+    public ResponseEntity<BookDTO> find(@PathVariable Long id, WebRequest request) {
         Optional<Book> bookOptional = service.findById(id);
 
         if(bookOptional.isPresent()) {
-            BookDTO responseDTO = modelMapper.map(bookOptional.get(), BookDTO.class);
-            return ResponseEntity.ok(responseDTO);
+            String eTag = BookETags.of(bookOptional.get(), bookFormat(request.getHeader(HttpHeaders.ACCEPT)));
+            if(request.checkNotModified(eTag)) {
+                return null;
+            }
+            BookDTO responseDTO = bookMapper.toDTO(bookOptional.get());
+            return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(responseDTO);
         } else {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND);
         }
     }
 
+    @GetMapping("/isbn/{isbn}")
+    public ResponseEntity<BookDTO> findByIsbn(@PathVariable String isbn, WebRequest request) {
+        Book book = service.findByIsbn(isbn).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+
+        String eTag = BookETags.of(book, bookFormat(request.getHeader(HttpHeaders.ACCEPT)));
+        if(request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(bookMapper.toDTO(book));
+    }
+
     @GetMapping
-    public ResponseEntity<Page<BookDTO>> find(BookDTO bookDTO, Pageable pageRequest) {
-        Book book = modelMapper.map(bookDTO, Book.class);
+    public ResponseEntity<BookPage> find(BookDTO bookDTO, Pageable pageRequest, WebRequest request) {
+        Book book = bookMapper.toEntity(bookDTO);
 
         Page<Book> result = service.find(book, pageRequest);
-        List<BookDTO> booksDTO = result.getContent().stream().map(entity -> modelMapper.map(entity, BookDTO.class)).collect(Collectors.toList());
+        String eTag = BookETags.of(result.getContent(), pageRequest, result.getTotalElements(), request.getHeader(HttpHeaders.ACCEPT));
+        if(request.checkNotModified(eTag)) {
+            return null;
+        }
+        BookPage page = new BookPage(result.getContent(), pageRequest, result.hasNext(), result.getTotalElements(), nextPage(result));
+        return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(page);
+    }
+
+    /**
+     * Fetches many books by id in one request, answering the ids that were not found under "missing".
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<BookLookupDTO> findAll(@RequestParam List<Long> ids, WebRequest request) {
+        List<Book> books = lookup(ids);
+        String eTag = BookETags.of(books, ids, bookFormat(request.getHeader(HttpHeaders.ACCEPT)));
+        if(request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(toLookupDTO(ids, books));
+    }
 
-        return ResponseEntity.ok(new PageImpl<>(booksDTO, pageRequest, result.getTotalElements()));
+    /**
+     * Same as {@code GET ?ids=}, for id lists too long for a URL.
+     */
+    @PostMapping("/lookup")
+    public ResponseEntity<BookLookupDTO> lookupAll(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(toLookupDTO(ids, lookup(ids)));
     }
 
+    private List<Book> lookup(List<Long> ids) {
+        if(ids.size() > maxLookupIds) {
+            throw new BusinessException("At most " + maxLookupIds + " ids can be looked up at once");
+        }
+        return service.findAllById(ids);
+    }
+
+    private BookLookupDTO toLookupDTO(List<Long> ids, List<Book> books) {
+        Set<Long> found = books.stream().map(Book::getId).collect(Collectors.toSet());
+        List<Long> missing = ids.stream().distinct().filter(id -> !found.contains(id)).collect(Collectors.toList());
+        List<BookDTO> booksDTO = books.stream().map(bookMapper::toDTO).collect(Collectors.toList());
+        return BookLookupDTO.builder().books(booksDTO).missing(missing).build();
+    }
+
+    /**
+     * count=none answers a Slice (no total, hasNext from an extra row); count=approx answers a Page whose total
+     * may come from a cache. Without the parameter the total is counted exactly.
+     */
+    @GetMapping(params = {"count=none", "!after"})
+    public ResponseEntity<BookPage> findSlice(BookDTO bookDTO, Pageable pageRequest, WebRequest request) {
+        Book book = bookMapper.toEntity(bookDTO);
+
+        Slice<Book> result = service.findSlice(book, pageRequest);
+        String eTag = BookETags.of(result.getContent(), pageRequest, result.hasNext(), request.getHeader(HttpHeaders.ACCEPT));
+        if(request.checkNotModified(eTag)) {
+            return null;
+        }
+        BookPage page = new BookPage(result.getContent(), pageRequest, result.hasNext(), null, nextPage(result));
+        return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(page);
+    }
+
+    @GetMapping(params = {"count=approx", "!after"})
+    public ResponseEntity<BookPage> findWithApproximateCount(BookDTO bookDTO, Pageable pageRequest, WebRequest request) {
+        Book book = bookMapper.toEntity(bookDTO);
+
+        Page<Book> result = service.findWithApproximateCount(book, pageRequest);
+        String eTag = BookETags.of(result.getContent(), pageRequest, result.getTotalElements(), request.getHeader(HttpHeaders.ACCEPT));
+        if(request.checkNotModified(eTag)) {
+            return null;
+        }
+        BookPage page = new BookPage(result.getContent(), pageRequest, result.hasNext(), result.getTotalElements(), nextPage(result));
+        return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(page);
+    }
+
+    @GetMapping(params = "after")
+    public ResponseEntity<BookPage> find(BookDTO bookDTO, @RequestParam Long after, Pageable pageRequest, WebRequest request) {
+        Book book = bookMapper.toEntity(bookDTO);
+
+        Slice<Book> result = service.findAfter(book, after, pageRequest.getPageSize());
+        String eTag = BookETags.of(result.getContent(), result.getPageable(), result.hasNext(), request.getHeader(HttpHeaders.ACCEPT));
+        if(request.checkNotModified(eTag)) {
+            return null;
+        }
+        String next = result.hasNext()
+                ? ServletUriComponentsBuilder.fromCurrentRequest().replaceQueryParam("after", lastId(result)).toUriString()
+                : null;
+        BookPage page = new BookPage(result.getContent(), result.getPageable(), result.hasNext(), null, next);
+        return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(page);
+    }
+
+    private static String nextPage(Slice<Book> result) {
+        if(!result.hasNext()) {
+            return null;
+        }
+        return ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("page", result.getNumber() + 1)
+                .replaceQueryParam("size", result.getSize())
+                .toUriString();
+    }
+
+    private static Long lastId(Slice<Book> result) {
+        return result.getContent().get(result.getNumberOfElements() - 1).getId();
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<BookDTO>> search(@RequestParam String q, @RequestParam(defaultValue = "20") int size) {
+        List<Book> result = service.search(q, Math.min(size, maxSearchResults));
+        List<BookDTO> booksDTO = result.stream().map(bookMapper::toDTO).collect(Collectors.toList());
+
+        return ResponseEntity.ok(booksDTO);
+    }
+
+    /**
+     * Streams the whole catalog as NDJSON, or as CSV when the Accept header prefers it. One mapping for both, so a
+     * request without an Accept header or with a wildcard gets NDJSON instead of an ambiguous match.
+     */
+    @GetMapping(value = "/export", produces = {NDJSON, CSV})
+    public void export(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if(negotiate(request.getHeader(HttpHeaders.ACCEPT), MediaType.valueOf(NDJSON), MediaType.valueOf(CSV)).isCompatibleWith(MediaType.valueOf(CSV))) {
+            exportAsCsv(response);
+        } else {
+            exportAsNdjson(response);
+        }
+    }
+
+    private void exportAsNdjson(HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+
+        try(SequenceWriter writer = objectMapper.writerFor(BookDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n")
+                .writeValues(response.getOutputStream())) {
+            service.export(book -> {
+                try {
+                    writer.write(bookMapper.toDTO(book));
+                } catch(IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        }
+    }
+
+    private void exportAsCsv(HttpServletResponse response) throws IOException {
+        response.setContentType(CSV);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        try(Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8))) {
+            writer.write("id,title,author,isbn\n");
+            service.export(book -> {
+                try {
+                    writer.write(book.getId() + "," + csv(book.getTitle()) + "," + csv(book.getAuthor()) + "," + csv(book.getIsbn()) + "\n");
+                } catch(IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        }
+    }
+
+    private static String csv(String value) {
+        if(value == null) {
+            return "";
+        }
+        if(value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    /**
+     * An If-Match header makes the update conditional on the version it names; a mismatch answers 412.
+     */
     @PutMapping("/{id}")
-    public ResponseEntity<BookDTO> update(@PathVariable Long id, @RequestBody BookDTO bookDTO) {
-        Optional<Book> bookOptional = service.findById(id);
+    public ResponseEntity<BookDTO> update(@PathVariable Long id, @RequestBody BookDTO bookDTO,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        Book book = Book.builder().id(id).title(bookDTO.getTitle()).author(bookDTO.getAuthor()).version(bookDTO.getVersion()).build();
+        if(ifMatch != null) {
+            book.setVersion(versionOf(ifMatch));
+        }
 
-        if(bookOptional.isPresent()) {
-            Book book = bookOptional.get();
-            book.setTitle(bookDTO.getTitle());
-            book.setAuthor(bookDTO.getAuthor());
-            Book updatedResource = service.update(book);
+        Optional<Book> bookOptional;
+        try {
+            bookOptional = service.update(book);
+        } catch(OptimisticLockingFailureException ex) {
+            if(ifMatch == null) {
+                throw ex;
+            }
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
+        }
 
-            BookDTO responseDTO = modelMapper.map(updatedResource, BookDTO.class);
-            return ResponseEntity.ok().body(responseDTO);
+        if(bookOptional.isPresent()) {
+            BookDTO responseDTO = bookMapper.toDTO(bookOptional.get());
+            return ResponseEntity.ok().eTag(BookETags.of(bookOptional.get(), bookFormat(accept))).varyBy(HttpHeaders.ACCEPT).body(responseDTO);
+        } else if(ifMatch != null) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
         } else {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND);
         }
     }
 
+    private static Long versionOf(String ifMatch) {
+        try {
+            return BookETags.versionOf(ifMatch);
+        } catch(IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
+        }
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> delete(@PathVariable Long id) {
-        Optional<Book> bookOptional = service.findById(id);
-
-        if(bookOptional.isPresent()) {
-            service.delete(id);
+        if(service.delete(id)) {
             return ResponseEntity.noContent().build();
         } else {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND);
@@ -102,6 +500,12 @@ public class BookController {
         return new ApiErrors(bindingResult);
     }
 
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ApiErrors handleOptimisticLockingFailureException(OptimisticLockingFailureException ex) {
+        return new ApiErrors(ex.getMessage());
+    }
+
     @ExceptionHandler(BusinessException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ApiErrors handleBusinessException(BusinessException ex) {
@@ -0,0 +1,67 @@
+package com.sparsis.libraryapi.api.controller;
+
+import com.sparsis.libraryapi.model.entity.Book;
+import org.springframework.http.MediaType;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Strong entity tags computed from entities, so conditional requests can be answered before anything is
+ * mapped or serialized. A single book is tagged with its version, plus the format for anything but JSON; a list is
+ * tagged with a digest of the ids and versions it contains plus whatever else shapes the response (paging, totals,
+ * format).
+ */
+final class BookETags {
+
+    private BookETags() {
+    }
+
+    static String of(Book book, MediaType mediaType) {
+        String format = MediaType.APPLICATION_JSON.equals(mediaType) ? "" : "-" + mediaType.getSubtype();
+        if(book.getVersion() != null) {
+            return quote(book.getVersion() + format);
+        }
+        return quote(digest(fingerprint(book)) + format);
+    }
+
+    static String of(List<Book> books, Object... responseAttributes) {
+        StringBuilder fingerprint = new StringBuilder();
+        books.forEach(book -> fingerprint.append(book.getVersion() != null ? book.getId() + ":" + book.getVersion() : fingerprint(book)).append(';'));
+        for(Object attribute : responseAttributes) {
+            fingerprint.append(attribute).append(';');
+        }
+        return quote(digest(fingerprint.toString()));
+    }
+
+    /**
+     * Extracts the version from an If-Match tag produced by {@link #of(Book, MediaType)}, in any format; null for
+     * "*", which matches any version.
+     */
+    static Long versionOf(String ifMatch) {
+        String tag = ifMatch.trim();
+        if("*".equals(tag)) {
+            return null;
+        }
+        if(tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            throw new IllegalArgumentException("Not a strong entity tag: " + ifMatch);
+        }
+        String value = tag.substring(1, tag.length() - 1);
+        int format = value.indexOf('-');
+        return Long.valueOf(format < 0 ? value : value.substring(0, format));
+    }
+
+    private static String fingerprint(Book book) {
+        return book.getId() + ":" + Objects.hash(book.getTitle(), book.getAuthor(), book.getIsbn());
+    }
+
+    private static String digest(String value) {
+        return DigestUtils.md5DigestAsHex(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String quote(String value) {
+        return "\"" + value + "\"";
+    }
+}
@@ -0,0 +1,39 @@
+package com.sparsis.libraryapi.api.converter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.sparsis.libraryapi.api.mapper.BookMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Registers the {@link com.sparsis.libraryapi.api.dto.BookPage} converters ahead of Jackson. The compact JSON one
+ * comes first, so it answers {@code application/json} and {@code *}{@code /*}; CBOR and Smile clients get the
+ * same envelope in binary. Single books and request bodies in CBOR and Smile are handled by the Jackson
+ * converters Spring MVC registers when those data formats are on the classpath.
+ */
+@Configuration
+public class BookPageWebConfiguration implements WebMvcConfigurer {
+
+    public static final MediaType APPLICATION_SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private BookMapper bookMapper;
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new CompactBookPageConverter(objectMapper.getFactory(), MediaType.APPLICATION_JSON));
+        converters.add(1, new CompactBookPageConverter(new CBORFactory(), MediaType.APPLICATION_CBOR));
+        converters.add(2, new CompactBookPageConverter(new SmileFactory(), APPLICATION_SMILE));
+        converters.add(3, new SpringPageBookPageConverter(objectMapper, bookMapper));
+    }
+}
@@ -0,0 +1,91 @@
+package com.sparsis.libraryapi.api.converter;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sparsis.libraryapi.api.dto.BookPage;
+import com.sparsis.libraryapi.model.entity.Book;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a {@link BookPage} as {@code {"content":[...],"next":"...","total":n}}, streaming each book's fields
+ * from the entity with a {@link JsonGenerator}: no DTOs, no intermediate tree, and null fields are left out.
+ * {@code next} and {@code total} are only written when there is a next page and a count. The same envelope is
+ * written in CBOR or Smile when created with those factories.
+ */
+public class CompactBookPageConverter extends AbstractHttpMessageConverter<BookPage> {
+
+    private final JsonFactory jsonFactory;
+
+    public CompactBookPageConverter(JsonFactory jsonFactory, MediaType mediaType) {
+        super(mediaType);
+        this.jsonFactory = jsonFactory;
+    }
+
+    public void write(BookPage page, OutputStream out) throws IOException {
+        try(JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            // The response stream belongs to the container; closing the generator must only flush it
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("content");
+            for(Book book : page.getContent()) {
+                writeBook(generator, book);
+            }
+            generator.writeEndArray();
+            if(page.getNext() != null) {
+                generator.writeStringField("next", page.getNext());
+            }
+            if(page.getTotal() != null) {
+                generator.writeNumberField("total", page.getTotal());
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return BookPage.class == clazz;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected BookPage readInternal(Class<? extends BookPage> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Book pages are write only", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(BookPage page, HttpOutputMessage outputMessage) throws IOException {
+        write(page, outputMessage.getBody());
+    }
+
+    private static void writeBook(JsonGenerator generator, Book book) throws IOException {
+        generator.writeStartObject();
+        if(book.getId() != null) {
+            generator.writeNumberField("id", book.getId());
+        }
+        if(book.getTitle() != null) {
+            generator.writeStringField("title", book.getTitle());
+        }
+        if(book.getAuthor() != null) {
+            generator.writeStringField("author", book.getAuthor());
+        }
+        if(book.getIsbn() != null) {
+            generator.writeStringField("isbn", book.getIsbn());
+        }
+        if(book.getVersion() != null) {
+            generator.writeNumberField("version", book.getVersion());
+        }
+        generator.writeEndObject();
+    }
+}
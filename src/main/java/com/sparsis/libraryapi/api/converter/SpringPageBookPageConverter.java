@@ -0,0 +1,58 @@
+package com.sparsis.libraryapi.api.converter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sparsis.libraryapi.api.dto.BookDTO;
+import com.sparsis.libraryapi.api.dto.BookPage;
+import com.sparsis.libraryapi.api.mapper.BookMapper;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Writes a {@link BookPage} the way list responses used to look, as a serialized {@code PageImpl} (or
+ * {@code SliceImpl} without a total) of {@link BookDTO}, for clients asking for {@link BookPage#SPRING_PAGE_JSON}.
+ */
+public class SpringPageBookPageConverter extends AbstractHttpMessageConverter<BookPage> {
+
+    private final ObjectMapper objectMapper;
+
+    private final BookMapper bookMapper;
+
+    public SpringPageBookPageConverter(ObjectMapper objectMapper, BookMapper bookMapper) {
+        super(MediaType.parseMediaType(BookPage.SPRING_PAGE_JSON));
+        this.objectMapper = objectMapper;
+        this.bookMapper = bookMapper;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return BookPage.class == clazz;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected BookPage readInternal(Class<? extends BookPage> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Book pages are write only", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(BookPage page, HttpOutputMessage outputMessage) throws IOException {
+        List<BookDTO> booksDTO = page.getContent().stream().map(bookMapper::toDTO).collect(Collectors.toList());
+        Object body = page.getTotal() != null
+                ? new PageImpl<>(booksDTO, page.getPageable(), page.getTotal())
+                : new SliceImpl<>(booksDTO, page.getPageable(), page.isHasNext());
+        objectMapper.writeValue(outputMessage.getBody(), body);
+    }
+}
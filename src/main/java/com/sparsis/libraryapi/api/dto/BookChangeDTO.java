@@ -0,0 +1,27 @@
+package com.sparsis.libraryapi.api.dto;
+
+import com.sparsis.libraryapi.model.entity.BookChange;
+import lombok.*;
+
+import java.time.Instant;
+
+@AllArgsConstructor
+@Builder
+@Getter
+@NoArgsConstructor
+@Setter
+public class BookChangeDTO {
+    private Long seq;
+
+    private BookChange.Type type;
+
+    private Long bookId;
+
+    private Long bookVersion;
+
+    private Instant changedAt;
+
+    public static BookChangeDTO of(BookChange change) {
+        return new BookChangeDTO(change.getSeq(), change.getType(), change.getBookId(), change.getBookVersion(), change.getChangedAt());
+    }
+}
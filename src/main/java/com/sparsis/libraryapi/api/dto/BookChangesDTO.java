@@ -0,0 +1,20 @@
+package com.sparsis.libraryapi.api.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * A batch of the change feed; {@code next} is the sequence number to resume from, which is {@code since} again
+ * when the batch is empty.
+ */
+@AllArgsConstructor
+@Builder
+@Getter
+@NoArgsConstructor
+@Setter
+public class BookChangesDTO {
+    private List<BookChangeDTO> changes;
+
+    private long next;
+}
@@ -20,4 +20,6 @@ public class BookDTO {
 
     @NotEmpty
     private String isbn;
+
+    private Long version;
 }
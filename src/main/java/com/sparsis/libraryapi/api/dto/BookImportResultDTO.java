@@ -0,0 +1,20 @@
+package com.sparsis.libraryapi.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Builder
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@Setter
+public class BookImportResultDTO {
+    private int index;
+
+    private Long id;
+
+    private List<String> errors;
+}
@@ -0,0 +1,16 @@
+package com.sparsis.libraryapi.api.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Builder
+@Getter
+@NoArgsConstructor
+@Setter
+public class BookLookupDTO {
+    private List<BookDTO> books;
+
+    private List<Long> missing;
+}
@@ -0,0 +1,41 @@
+package com.sparsis.libraryapi.api.dto;
+
+import com.sparsis.libraryapi.model.entity.Book;
+import lombok.Getter;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * Body of the list responses. It holds the entities themselves, so the converters can write them straight to the
+ * response: compact JSON by default, or Spring's {@code Page}/{@code Slice} shape for {@link #SPRING_PAGE_JSON}.
+ */
+@Getter
+public class BookPage {
+
+    public static final String SPRING_PAGE_JSON = "application/vnd.library.spring-page+json";
+
+    private final List<Book> content;
+
+    private final Pageable pageable;
+
+    private final boolean hasNext;
+
+    /**
+     * Total number of books, or null when the list was read without a count.
+     */
+    private final Long total;
+
+    /**
+     * URL of the next page, or null on the last one.
+     */
+    private final String next;
+
+    public BookPage(List<Book> content, Pageable pageable, boolean hasNext, Long total, String next) {
+        this.content = content;
+        this.pageable = pageable;
+        this.hasNext = hasNext;
+        this.total = total;
+        this.next = next;
+    }
+}
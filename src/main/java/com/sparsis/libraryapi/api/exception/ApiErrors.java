@@ -20,6 +20,10 @@ public class ApiErrors {
         this.errors = Arrays.asList(ex.getMessage());
     }
 
+    public ApiErrors(String error) {
+        this.errors = Arrays.asList(error);
+    }
+
     public List<String> getErrors() {
         return Collections.unmodifiableList(errors);
     }
@@ -0,0 +1,132 @@
+package com.sparsis.libraryapi.api.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gradient concurrency limit: the number of requests allowed in flight follows the ratio between the long-term
+ * latency (what the system does without queueing) and the recent latency. While recent latency stays within
+ * {@code tolerance} of the long-term one the limit grows by about its square root per window; once requests start
+ * queueing downstream (Tomcat threads, the JDBC pool) recent latency rises and the limit shrinks in proportion.
+ * Windows where most samples were taken with fewer than half the permits used say nothing about capacity and leave
+ * the limit alone.
+ * <p>
+ * Releases only add their sample to counters. The thread whose sample fills the window recomputes the limit; a
+ * thread that finds another one already at it moves on instead of waiting.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final double TOLERANCE = 1.5;
+
+    private static final int WINDOW = 10;
+
+    private static final double LONG_WINDOW = 600;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder samples = new LongAdder();
+
+    private final LongAdder usedSamples = new LongAdder();
+
+    private final LongAdder rttSum = new LongAdder();
+
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    private volatile double limit;
+
+    private double longRtt;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        if(minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Invalid concurrency limit: " + minLimit + " <= " + initialLimit + " <= " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Takes a permit, or returns false without waiting when the limit is reached.
+     */
+    public boolean tryAcquire() {
+        while(true) {
+            int current = inFlight.get();
+            if(current >= getLimit()) {
+                return false;
+            }
+            if(inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns a permit taken by {@link #tryAcquire()}, reporting how long the request held it.
+     */
+    public void release(long rttNanos) {
+        int current = inFlight.getAndDecrement();
+        rttSum.add(rttNanos);
+        if(current >= limit / 2) {
+            usedSamples.increment();
+        }
+        samples.increment();
+        if(samples.sum() >= WINDOW && updateLock.tryLock()) {
+            try {
+                update();
+            } finally {
+                updateLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns a permit without a latency sample, e.g. for a request that failed before doing its work.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Closes the window, under the update lock. Samples added while the counters are read may land in either
+     * window, which shifts an average by a sample at most.
+     */
+    private void update() {
+        long count = samples.sumThenReset();
+        if(count < WINDOW) {
+            // The window was closed by the previous holder of the lock
+            samples.add(count);
+            return;
+        }
+        long used = usedSamples.sumThenReset();
+        double shortRtt = (double) rttSum.sumThenReset() / count;
+        if(longRtt == 0) {
+            longRtt = shortRtt;
+            return;
+        }
+        longRtt += (shortRtt - longRtt) * count / LONG_WINDOW;
+        // After a sustained latency drop the long-term average lags far behind; let it catch up faster
+        if(longRtt / shortRtt > 2) {
+            longRtt *= 0.6;
+        }
+        if(used < count / 2.0) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+}
@@ -0,0 +1,27 @@
+package com.sparsis.libraryapi.api.limit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Puts the {@link ConcurrencyLimitFilter} in front of the book API when {@code library.limit.enabled=true}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "library.limit.enabled", havingValue = "true")
+@EnableConfigurationProperties(ConcurrencyLimitProperties.class)
+public class ConcurrencyLimitConfiguration {
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(ConcurrencyLimitProperties properties,
+                                                                                 MeterRegistry registry) {
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(properties.getRead().create(), properties.getWrite().create(),
+                properties.getRetryAfter(), registry);
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/books", "/api/books/*");
+        return registration;
+    }
+}
@@ -0,0 +1,84 @@
+package com.sparsis.libraryapi.api.limit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Sheds load in front of the book API: reads (GET, HEAD) and writes each have an {@link AdaptiveConcurrencyLimit},
+ * and a request arriving when its limit is reached is answered 503 with {@code Retry-After} at once, instead of
+ * waiting for a Tomcat thread or a JDBC connection and slowing down every request already admitted.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final String REJECTED_BODY = "{\"errors\":[\"Too many concurrent requests\"]}";
+
+    private final AdaptiveConcurrencyLimit readLimit;
+
+    private final AdaptiveConcurrencyLimit writeLimit;
+
+    private final String retryAfterSeconds;
+
+    private final Counter readsRejected;
+
+    private final Counter writesRejected;
+
+    public ConcurrencyLimitFilter(AdaptiveConcurrencyLimit readLimit, AdaptiveConcurrencyLimit writeLimit, Duration retryAfter,
+                                  MeterRegistry registry) {
+        this.readLimit = readLimit;
+        this.writeLimit = writeLimit;
+        this.retryAfterSeconds = Long.toString(Math.max(1, retryAfter.getSeconds()));
+        this.readsRejected = registry.counter("library.book.limit.rejected", "kind", "read");
+        this.writesRejected = registry.counter("library.book.limit.rejected", "kind", "write");
+        Gauge.builder("library.book.limit", readLimit, AdaptiveConcurrencyLimit::getLimit).tag("kind", "read").register(registry);
+        Gauge.builder("library.book.limit", writeLimit, AdaptiveConcurrencyLimit::getLimit).tag("kind", "write").register(registry);
+        Gauge.builder("library.book.limit.in_flight", readLimit, AdaptiveConcurrencyLimit::getInFlight).tag("kind", "read").register(registry);
+        Gauge.builder("library.book.limit.in_flight", writeLimit, AdaptiveConcurrencyLimit::getInFlight).tag("kind", "write").register(registry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean read = HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+        AdaptiveConcurrencyLimit limit = read ? readLimit : writeLimit;
+        if(!limit.tryAcquire()) {
+            (read ? readsRejected : writesRejected).increment();
+            reject(response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            chain.doFilter(request, response);
+            completed = true;
+        } finally {
+            // Failures may be fast or slow for reasons unrelated to load, and an asynchronous request has only
+            // started here; only completed requests are samples
+            if(completed && !request.isAsyncStarted() && response.getStatus() < HttpStatus.INTERNAL_SERVER_ERROR.value()) {
+                limit.release(System.nanoTime() - start);
+            } else {
+                limit.release();
+            }
+        }
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write(REJECTED_BODY);
+    }
+}
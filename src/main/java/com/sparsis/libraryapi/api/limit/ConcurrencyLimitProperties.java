@@ -0,0 +1,42 @@
+package com.sparsis.libraryapi.api.limit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("library.limit")
+public class ConcurrencyLimitProperties {
+
+    private boolean enabled;
+
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+    private Limit read = new Limit(20, 4, 200);
+
+    private Limit write = new Limit(10, 2, 50);
+
+    @Data
+    public static class Limit {
+
+        private int initial;
+
+        private int min;
+
+        private int max;
+
+        public Limit() {
+        }
+
+        Limit(int initial, int min, int max) {
+            this.initial = initial;
+            this.min = min;
+            this.max = max;
+        }
+
+        AdaptiveConcurrencyLimit create() {
+            return new AdaptiveConcurrencyLimit(initial, min, max);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.sparsis.libraryapi.api.mapper;
+
+import com.sparsis.libraryapi.api.dto.BookDTO;
+import com.sparsis.libraryapi.model.entity.Book;
+
+public interface BookMapper {
+    BookDTO toDTO(Book book);
+    Book toEntity(BookDTO bookDTO);
+}
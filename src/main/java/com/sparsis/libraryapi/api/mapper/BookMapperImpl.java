@@ -0,0 +1,33 @@
+package com.sparsis.libraryapi.api.mapper;
+
+import com.sparsis.libraryapi.api.dto.BookDTO;
+import com.sparsis.libraryapi.model.entity.Book;
+
+/**
+ * Field-by-field copies between {@link Book} and {@link BookDTO}: no reflection, no type map lookups and
+ * no allocation beyond the target object.
+ */
+public class BookMapperImpl implements BookMapper {
+
+    @Override
+    public BookDTO toDTO(Book book) {
+        if(book == null) {
+            return null;
+        }
+        return new BookDTO(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(), book.getVersion());
+    }
+
+    @Override
+    public Book toEntity(BookDTO bookDTO) {
+        if(bookDTO == null) {
+            return null;
+        }
+        Book book = new Book();
+        book.setId(bookDTO.getId());
+        book.setTitle(bookDTO.getTitle());
+        book.setAuthor(bookDTO.getAuthor());
+        book.setIsbn(bookDTO.getIsbn());
+        book.setVersion(bookDTO.getVersion());
+        return book;
+    }
+}
@@ -0,0 +1,34 @@
+package com.sparsis.libraryapi.api.mapper;
+
+import com.sparsis.libraryapi.api.dto.BookDTO;
+import com.sparsis.libraryapi.model.entity.Book;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Records the time spent mapping books as {@code library.book.mapping}, tagged by direction.
+ */
+public class TimedBookMapper implements BookMapper {
+
+    private final BookMapper delegate;
+
+    private final Timer toDTOTimer;
+
+    private final Timer toEntityTimer;
+
+    public TimedBookMapper(BookMapper delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.toDTOTimer = registry.timer("library.book.mapping", "operation", "toDTO");
+        this.toEntityTimer = registry.timer("library.book.mapping", "operation", "toEntity");
+    }
+
+    @Override
+    public BookDTO toDTO(Book book) {
+        return toDTOTimer.record(() -> delegate.toDTO(book));
+    }
+
+    @Override
+    public Book toEntity(BookDTO bookDTO) {
+        return toEntityTimer.record(() -> delegate.toEntity(bookDTO));
+    }
+}
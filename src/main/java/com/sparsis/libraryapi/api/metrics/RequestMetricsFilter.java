@@ -0,0 +1,64 @@
+package com.sparsis.libraryapi.api.metrics;
+
+import com.sparsis.libraryapi.exception.BusinessException;
+import com.sparsis.libraryapi.repository.StatementCounter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Per-request metrics that {@code http.server.requests} does not cover: the number of JDBC statements a
+ * request ran ({@code library.jdbc.statements}) and the business/not-found outcomes ({@code library.book.errors}).
+ */
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry registry;
+
+    private final Counter businessErrors;
+
+    private final Counter notFound;
+
+    public RequestMetricsFilter(MeterRegistry registry) {
+        this.registry = registry;
+        this.businessErrors = registry.counter("library.book.errors", "type", "business");
+        this.notFound = registry.counter("library.book.errors", "type", "not_found");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        StatementCounter.reset();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            record(request, response);
+        }
+    }
+
+    private void record(HttpServletRequest request, HttpServletResponse response) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        DistributionSummary.builder("library.jdbc.statements")
+                .baseUnit("statements")
+                .tag("method", request.getMethod())
+                .tag("uri", pattern == null ? "UNKNOWN" : pattern.toString())
+                .register(registry)
+                .record(StatementCounter.count());
+
+        if(request.getAttribute(DispatcherServlet.EXCEPTION_ATTRIBUTE) instanceof BusinessException) {
+            businessErrors.increment();
+        }
+        if(response.getStatus() == HttpStatus.NOT_FOUND.value()) {
+            notFound.increment();
+        }
+    }
+}
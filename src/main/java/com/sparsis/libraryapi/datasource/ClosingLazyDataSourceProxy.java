@@ -0,0 +1,26 @@
+package com.sparsis.libraryapi.datasource;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Defers the routing decision to the first statement, when the transaction's read-only marker and shard are
+ * known, and closes the pools behind the router on shutdown.
+ */
+class ClosingLazyDataSourceProxy<T extends DataSource & Closeable> extends LazyConnectionDataSourceProxy implements Closeable {
+
+    private final T routingDataSource;
+
+    ClosingLazyDataSourceProxy(T routingDataSource) {
+        super(routingDataSource);
+        this.routingDataSource = routingDataSource;
+    }
+
+    @Override
+    public void close() throws IOException {
+        routingDataSource.close();
+    }
+}
@@ -0,0 +1,33 @@
+package com.sparsis.libraryapi.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Connection settings of one database behind a routing data source (primary, replica or shard).
+ */
+@Data
+public class DataSourceEndpoint {
+
+    private String url;
+
+    private String username = "sa";
+
+    private String password = "";
+
+    private int maximumPoolSize = 10;
+
+    HikariDataSource createPool(String name, ObjectProvider<MeterRegistry> registry) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(name);
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        registry.ifAvailable(meterRegistry -> dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry)));
+        return dataSource;
+    }
+}
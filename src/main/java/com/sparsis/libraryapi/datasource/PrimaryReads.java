@@ -0,0 +1,33 @@
+package com.sparsis.libraryapi.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Keeps the read-only transactions of an action on the primary. Meant for reads whose result outlives the request,
+ * like cache loads, which must not pick up a lagging replica's row. Without replica routing it has no effect.
+ */
+public final class PrimaryReads {
+
+    private static final ThreadLocal<Boolean> ACTIVE = new ThreadLocal<>();
+
+    private PrimaryReads() {
+    }
+
+    public static <T> T call(Supplier<T> action) {
+        Boolean previous = ACTIVE.get();
+        ACTIVE.set(true);
+        try {
+            return action.get();
+        } finally {
+            if(previous == null) {
+                ACTIVE.remove();
+            } else {
+                ACTIVE.set(previous);
+            }
+        }
+    }
+
+    static boolean isActive() {
+        return ACTIVE.get() != null;
+    }
+}
@@ -0,0 +1,41 @@
+package com.sparsis.libraryapi.datasource;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Per-thread read-your-writes window: until it expires, read-only transactions of the thread are kept on the
+ * primary so they see the thread's own writes despite replica lag. {@link ReadYourWritesFilter} carries the
+ * window across requests of the same client.
+ */
+final class ReadYourWrites {
+
+    private static final ThreadLocal<Long> PINNED_UNTIL = new ThreadLocal<>();
+
+    private static final ThreadLocal<LongConsumer> LISTENER = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    static boolean isPinned() {
+        Long pinnedUntil = PINNED_UNTIL.get();
+        return pinnedUntil != null && pinnedUntil > System.currentTimeMillis();
+    }
+
+    static void pin(long until) {
+        PINNED_UNTIL.set(until);
+        LongConsumer listener = LISTENER.get();
+        if(listener != null) {
+            listener.accept(until);
+        }
+    }
+
+    static void open(Long pinnedUntil, LongConsumer listener) {
+        PINNED_UNTIL.set(pinnedUntil);
+        LISTENER.set(listener);
+    }
+
+    static void close() {
+        PINNED_UNTIL.remove();
+        LISTENER.remove();
+    }
+}
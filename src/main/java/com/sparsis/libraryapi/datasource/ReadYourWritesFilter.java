@@ -0,0 +1,56 @@
+package com.sparsis.libraryapi.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Keeps a client on the primary for the stickiness window after its last write. The window end travels in a
+ * cookie, so a GET following a PUT from the same client does not read a lagging replica.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE = "LIBRARY_PRIMARY_UNTIL";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean[] cookieSet = new boolean[1];
+        ReadYourWrites.open(pinnedUntil(request), until -> {
+            if(!cookieSet[0] && !response.isCommitted()) {
+                cookieSet[0] = true;
+                Cookie cookie = new Cookie(COOKIE, Long.toString(until));
+                cookie.setPath("/");
+                cookie.setHttpOnly(true);
+                cookie.setMaxAge((int) Math.max(1, (until - System.currentTimeMillis() + 999) / 1000));
+                response.addCookie(cookie);
+            }
+        });
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.close();
+        }
+    }
+
+    private static Long pinnedUntil(HttpServletRequest request) {
+        if(request.getCookies() == null) {
+            return null;
+        }
+        for(Cookie cookie : request.getCookies()) {
+            if(COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch(NumberFormatException ex) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+}
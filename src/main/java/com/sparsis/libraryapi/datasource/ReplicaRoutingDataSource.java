@@ -0,0 +1,74 @@
+package com.sparsis.libraryapi.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions to the replicas (round robin) and everything else to the primary. A read-write
+ * transaction pins the thread to the primary for the stickiness window, see {@link ReadYourWrites}, and
+ * {@link PrimaryReads} keeps single reads there.
+ * <p>
+ * The read-only marker is only known once the transaction has started, so this data source must be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    static final String PRIMARY = "primary";
+
+    private final List<DataSource> dataSources = new ArrayList<>();
+
+    private final int replicas;
+
+    private final long stickinessMillis;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration stickiness) {
+        this.replicas = replicas.size();
+        this.stickinessMillis = stickiness.toMillis();
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for(int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+
+        dataSources.add(primary);
+        dataSources.addAll(replicas);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if(!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if(stickinessMillis > 0 && TransactionSynchronizationManager.isActualTransactionActive()) {
+                ReadYourWrites.pin(System.currentTimeMillis() + stickinessMillis);
+            }
+            return PRIMARY;
+        }
+        if(replicas == 0 || ReadYourWrites.isPinned() || PrimaryReads.isActive()) {
+            return PRIMARY;
+        }
+        return Math.floorMod(next.getAndIncrement(), replicas);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for(DataSource dataSource : dataSources) {
+            if(dataSource instanceof Closeable) {
+                ((Closeable) dataSource).close();
+            }
+        }
+    }
+}
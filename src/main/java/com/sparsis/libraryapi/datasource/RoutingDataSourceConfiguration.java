@@ -0,0 +1,45 @@
+package com.sparsis.libraryapi.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the auto-configured data source with a primary/replica router when
+ * {@code library.datasource.routing.enabled=true}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "library.datasource.routing.enabled", havingValue = "true")
+@EnableConfigurationProperties(RoutingDataSourceProperties.class)
+public class RoutingDataSourceConfiguration {
+
+    /**
+     * The router itself is not a bean: every DataSource bean triggers the schema initializer, which in turn needs
+     * this one.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(RoutingDataSourceProperties properties, ObjectProvider<MeterRegistry> registry) {
+        DataSource primary = properties.getPrimary().createPool("primary", registry);
+        List<DataSource> replicas = new ArrayList<>();
+        for(int i = 0; i < properties.getReplicas().size(); i++) {
+            replicas.add(properties.getReplicas().get(i).createPool("replica-" + i, registry));
+        }
+        ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(primary, replicas, properties.getStickiness());
+        routingDataSource.afterPropertiesSet();
+        return new ClosingLazyDataSourceProxy<>(routingDataSource);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter() {
+        return new ReadYourWritesFilter();
+    }
+}
@@ -0,0 +1,21 @@
+package com.sparsis.libraryapi.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties("library.datasource.routing")
+public class RoutingDataSourceProperties {
+
+    private boolean enabled;
+
+    private Duration stickiness = Duration.ofSeconds(5);
+
+    private DataSourceEndpoint primary = new DataSourceEndpoint();
+
+    private List<DataSourceEndpoint> replicas = new ArrayList<>();
+}
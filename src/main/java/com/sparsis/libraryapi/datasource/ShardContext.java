@@ -0,0 +1,34 @@
+package com.sparsis.libraryapi.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * The shard the current thread talks to. Connections are bound to a shard when they are first used, so the shard
+ * has to be set before the transaction's first statement; without one, shard 0 is used.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> SHARD = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static int current() {
+        Integer shard = SHARD.get();
+        return shard == null ? 0 : shard;
+    }
+
+    public static <T> T call(int shard, Supplier<T> action) {
+        Integer previous = SHARD.get();
+        SHARD.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if(previous == null) {
+                SHARD.remove();
+            } else {
+                SHARD.set(previous);
+            }
+        }
+    }
+}
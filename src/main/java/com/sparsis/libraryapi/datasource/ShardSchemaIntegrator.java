@@ -0,0 +1,44 @@
+package com.sparsis.libraryapi.datasource;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.hbm2ddl.SchemaExport;
+import org.hibernate.tool.hbm2ddl.SchemaUpdate;
+import org.hibernate.tool.schema.TargetType;
+
+import java.util.EnumSet;
+
+/**
+ * Hibernate only manages the schema of the connection it is given, which is shard 0. When {@code hbm2ddl.auto}
+ * creates or updates the schema (local H2 runs and tests), this applies the same action to the other shards.
+ */
+class ShardSchemaIntegrator implements Integrator {
+
+    private final int shards;
+
+    ShardSchemaIntegrator(int shards) {
+        this.shards = shards;
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        Object action = sessionFactory.getProperties().get(AvailableSettings.HBM2DDL_AUTO);
+        for(int shard = 1; shard < shards; shard++) {
+            ShardContext.call(shard, () -> {
+                if("create".equals(action) || "create-drop".equals(action)) {
+                    new SchemaExport().create(EnumSet.of(TargetType.DATABASE), metadata);
+                } else if("update".equals(action)) {
+                    new SchemaUpdate().execute(EnumSet.of(TargetType.DATABASE), metadata);
+                }
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
@@ -0,0 +1,80 @@
+package com.sparsis.libraryapi.datasource;
+
+import com.sparsis.libraryapi.repository.BookRepository;
+import com.sparsis.libraryapi.repository.ShardKeys;
+import com.sparsis.libraryapi.repository.ShardedBookRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Partitions the BOOK table over {@code library.sharding.shards[n]} when {@code library.sharding.enabled=true}.
+ * Not meant to be combined with replica routing: both replace the application's data source.
+ */
+@Configuration
+@ConditionalOnProperty(name = "library.sharding.enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfiguration {
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardingProperties properties, ObjectProvider<MeterRegistry> registry) {
+        int shards = properties.getShards().size();
+        if(shards == 0 || shards > ShardKeys.MAX_SHARDS) {
+            throw new IllegalStateException("library.sharding.shards must list between 1 and " + ShardKeys.MAX_SHARDS + " data sources");
+        }
+        List<DataSource> dataSources = new ArrayList<>();
+        for(int i = 0; i < shards; i++) {
+            dataSources.add(properties.getShards().get(i).createPool("shard-" + i, registry));
+        }
+        ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource(dataSources);
+        routingDataSource.afterPropertiesSet();
+        return new ClosingLazyDataSourceProxy<>(routingDataSource);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer shardSchemaCustomizer(ShardingProperties properties) {
+        ShardSchemaIntegrator integrator = new ShardSchemaIntegrator(properties.getShards().size());
+        return hibernateProperties -> hibernateProperties.put("hibernate.integrator_provider",
+                (IntegratorProvider) () -> Collections.singletonList(integrator));
+    }
+
+    @Bean
+    public ExecutorService shardQueryExecutor(ShardingProperties properties) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("shard-query-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(properties.getShards().size(), threadFactory);
+    }
+
+    @Bean
+    public static BeanPostProcessor shardedBookRepositoryPostProcessor(ObjectProvider<ShardingProperties> properties,
+                                                                      ObjectProvider<PlatformTransactionManager> transactionManager,
+                                                                      ObjectProvider<ExecutorService> executor) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if(!(bean instanceof BookRepository)) {
+                    return bean;
+                }
+                return new ShardedBookRepository((BookRepository) bean, properties.getObject().getShards().size(),
+                        transactionManager.getObject(), executor.getObject());
+            }
+        };
+    }
+}
@@ -0,0 +1,16 @@
+package com.sparsis.libraryapi.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties("library.sharding")
+public class ShardingProperties {
+
+    private boolean enabled;
+
+    private List<DataSourceEndpoint> shards = new ArrayList<>();
+}
@@ -0,0 +1,72 @@
+package com.sparsis.libraryapi.model;
+
+import java.util.OptionalLong;
+
+/**
+ * Normalizes ISBN-10 and ISBN-13, with or without hyphens or spaces, to the ISBN-13 as a number. The result is
+ * empty when the value is not a valid ISBN, including a wrong check digit.
+ */
+public final class Isbn {
+
+    private static final long ISBN_10_PREFIX = 978_000_000_000_0L;
+
+    private Isbn() {
+    }
+
+    public static OptionalLong parse(String value) {
+        if(value == null) {
+            return OptionalLong.empty();
+        }
+        long digits = 0;
+        int length = 0;
+        int checksum10 = 0;
+        boolean checkX = false;
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c == '-' || c == ' ') {
+                continue;
+            }
+            if(length == 9 && (c == 'X' || c == 'x')) {
+                checkX = true;
+                checksum10 += 10;
+                length++;
+                continue;
+            }
+            if(c < '0' || c > '9' || length == 13 || checkX) {
+                return OptionalLong.empty();
+            }
+            int digit = c - '0';
+            digits = digits * 10 + digit;
+            checksum10 += (10 - length) * digit;
+            length++;
+        }
+
+        if(length == 10) {
+            if(checksum10 % 11 != 0) {
+                return OptionalLong.empty();
+            }
+            long isbn13 = ISBN_10_PREFIX + (checkX ? digits : digits / 10) * 10;
+            return OptionalLong.of(isbn13 + checkDigit13(isbn13 / 10));
+        }
+        if(length == 13 && !checkX) {
+            long prefix = digits / 10_000_000_000L;
+            if((prefix == 978 || prefix == 979) && checkDigit13(digits / 10) == digits % 10) {
+                return OptionalLong.of(digits);
+            }
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Check digit of an ISBN-13 given its first 12 digits: weights alternate 1 and 3 from the left.
+     */
+    private static long checkDigit13(long first12) {
+        int sum = 0;
+        for(int position = 12; position >= 1; position--) {
+            int digit = (int) (first12 % 10);
+            sum += position % 2 == 0 ? 3 * digit : digit;
+            first12 /= 10;
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
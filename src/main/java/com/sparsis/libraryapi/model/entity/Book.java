@@ -1,23 +1,48 @@
 package com.sparsis.libraryapi.model.entity;
 
+import com.sparsis.libraryapi.model.Isbn;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
+import java.util.Locale;
+import java.util.OptionalLong;
 
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @Data
 @NoArgsConstructor
 
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Book.CACHE_REGION)
+@Cacheable
 @Entity
-@Table(name = "BOOK")
+@Table(name = "BOOK", indexes = {
+        @Index(name = "IDX_BOOK_TITLE", columnList = "TITLE_KEY"),
+        @Index(name = "IDX_BOOK_AUTHOR", columnList = "AUTHOR_KEY")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "UK_BOOK_ISBN", columnNames = "ISBN"),
+        @UniqueConstraint(name = "UK_BOOK_ISBN_NUMBER", columnNames = "ISBN_NUMBER")
+})
 public class Book {
 
+    /**
+     * Second-level cache region of books by id, used when {@code library.second-level-cache.enabled=true}.
+     */
+    public static final String CACHE_REGION = "book";
+
     @Column(name = "ID")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "BOOK_SEQ")
+    @GenericGenerator(name = "BOOK_SEQ", strategy = "com.sparsis.libraryapi.repository.ShardedSequenceGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "BOOK_SEQ"),
+            @Parameter(name = "increment_size", value = "50")
+    })
     @Id
     private Long id;
 
@@ -29,4 +54,48 @@ public class Book {
 
     @Column(name = "ISBN")
     private String isbn;
+
+    /**
+     * The ISBN normalized to an ISBN-13 number, or null when {@link #isbn} is not a valid ISBN. Derived on
+     * every write, so it is left out of equality.
+     */
+    @Column(name = "ISBN_NUMBER")
+    @EqualsAndHashCode.Exclude
+    private Long isbnNumber;
+
+    /**
+     * The title as {@link #searchKey(String)}, which the case-insensitive title filter matches against. Derived on
+     * every write, so it is left out of equality.
+     */
+    @Column(name = "TITLE_KEY")
+    @EqualsAndHashCode.Exclude
+    private String titleKey;
+
+    /**
+     * The author as {@link #searchKey(String)}, see {@link #titleKey}.
+     */
+    @Column(name = "AUTHOR_KEY")
+    @EqualsAndHashCode.Exclude
+    private String authorKey;
+
+    @Column(name = "VERSION")
+    @Version
+    private Long version;
+
+    /**
+     * Lower case in the root locale, so filters can match by prefix on an indexed column instead of on
+     * lower(TITLE), which no index serves.
+     */
+    public static String searchKey(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void normalize() {
+        OptionalLong number = Isbn.parse(isbn);
+        isbnNumber = number.isPresent() ? number.getAsLong() : null;
+        titleKey = searchKey(title);
+        authorKey = searchKey(author);
+    }
 }
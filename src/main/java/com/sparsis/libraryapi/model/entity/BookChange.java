@@ -0,0 +1,49 @@
+package com.sparsis.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Outbox entry of the change feed, written in the same transaction as the change to the book. Sequence numbers
+ * are allocated one at a time, so they only have gaps where a transaction rolled back.
+ */
+@AllArgsConstructor
+@Builder
+@Data
+@NoArgsConstructor
+
+@Entity
+@Table(name = "BOOK_CHANGE")
+public class BookChange {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    @Column(name = "SEQ")
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "BOOK_CHANGE_SEQ")
+    @Id
+    @SequenceGenerator(name = "BOOK_CHANGE_SEQ", sequenceName = "BOOK_CHANGE_SEQ", allocationSize = 1)
+    private Long seq;
+
+    @Column(name = "TYPE", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private Type type;
+
+    @Column(name = "BOOK_ID", nullable = false)
+    private Long bookId;
+
+    /**
+     * Version of the book after the change; null for deletions and for updates that did not check a version.
+     */
+    @Column(name = "BOOK_VERSION")
+    private Long bookVersion;
+
+    @Column(name = "CHANGED_AT", nullable = false)
+    private Instant changedAt;
+}
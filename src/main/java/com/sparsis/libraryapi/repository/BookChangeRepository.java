@@ -0,0 +1,32 @@
+package com.sparsis.libraryapi.repository;
+
+import com.sparsis.libraryapi.model.entity.BookChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface BookChangeRepository extends JpaRepository<BookChange, Long> {
+
+    @Query("select c from BookChange c where c.seq > :since order by c.seq")
+    List<BookChange> findAfter(long since, Pageable pageable);
+
+    @Query("select max(c.seq) from BookChange c")
+    Long findLastSeq();
+
+    @Query("select min(c.seq) from BookChange c")
+    Long findFirstSeq();
+
+    /**
+     * Keeps the newest change even when it is older, so the lowest stored sequence number still tells how far the
+     * purge went.
+     */
+    @Modifying
+    @Query("delete from BookChange c where c.changedAt < :before and c.seq < (select max(m.seq) from BookChange m)")
+    @Transactional
+    int deleteChangedBefore(Instant before);
+}
@@ -2,7 +2,46 @@ package com.sparsis.libraryapi.repository;
 
 import com.sparsis.libraryapi.model.entity.Book;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
+
+    /**
+     * Query cache region of filtered book lists, used when {@code library.second-level-cache.enabled=true}.
+     */
+    String QUERY_CACHE_REGION = "book-queries";
+
+    String SEARCH_KEYS = "b.titleKey = :#{T(com.sparsis.libraryapi.model.entity.Book).searchKey([1])}, "
+            + "b.authorKey = :#{T(com.sparsis.libraryapi.model.entity.Book).searchKey([2])}";
 
-public interface BookRepository extends JpaRepository<Book, Long> {
     boolean existsByIsbn(String isbn);
+
+    Optional<Book> findByIsbnNumber(Long isbnNumber);
+
+    /**
+     * Bulk updates skip the entity callbacks, so the search keys are derived here as {@link Book#searchKey} does.
+     */
+    @Modifying
+    @Query("update Book b set b.title = :title, b.author = :author, " + SEARCH_KEYS + ", b.version = coalesce(b.version, 0) + 1 where b.id = :id")
+    @Transactional
+    int updateTitleAndAuthor(Long id, String title, String author);
+
+    @Modifying
+    @Query("update Book b set b.title = :title, b.author = :author, " + SEARCH_KEYS + ", b.version = coalesce(b.version, 0) + 1 where b.id = :id and b.version = :version")
+    @Transactional
+    int updateTitleAndAuthor(Long id, String title, String author, Long version);
+
+    @Modifying
+    @Query("delete from Book b where b.id = :id")
+    @Transactional
+    int deleteBookById(Long id);
+
+    @Query("select b.isbn from Book b where b.isbn in :isbns")
+    Set<String> findExistingIsbns(Collection<String> isbns);
 }
@@ -0,0 +1,34 @@
+package com.sparsis.libraryapi.repository;
+
+import com.sparsis.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.stream.Stream;
+
+public interface BookRepositoryCustom {
+    /**
+     * Keyset pagination: returns up to {@code size} books matching the example whose id is greater than
+     * {@code after}, ordered by id. Unlike offset paging, the cost does not grow with the page depth.
+     */
+    Slice<Book> findAfter(Example<Book> example, Long after, int size);
+
+    /**
+     * Same result as {@code findAll(Example, Pageable)}, but both the page and its COUNT query are cacheable, so
+     * with the query cache enabled a repeated filter and page runs no SQL until the next write to BOOK.
+     */
+    Page<Book> findPage(Example<Book> example, Pageable pageable);
+
+    /**
+     * Offset pagination without the COUNT query that {@link #findPage(Example, Pageable)} runs for every page.
+     */
+    Slice<Book> findSlice(Example<Book> example, Pageable pageable);
+
+    /**
+     * Streams every book, ordered by id, from a forward-only cursor. Each entity is detached as it is read, so the
+     * persistence context does not grow with the table. Must be consumed inside a transaction and closed.
+     */
+    Stream<Book> streamAll();
+}
@@ -0,0 +1,131 @@
+package com.sparsis.libraryapi.repository;
+
+import com.sparsis.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.convert.QueryByExamplePredicateBuilder;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+public class BookRepositoryImpl implements BookRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Slice<Book> findAfter(Example<Book> example, Long after, int size) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Book> query = builder.createQuery(Book.class);
+        Root<Book> root = query.from(Book.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        Predicate examplePredicate = QueryByExamplePredicateBuilder.getPredicate(root, builder, example);
+        if(examplePredicate != null) {
+            predicates.add(examplePredicate);
+        }
+        if(after != null) {
+            predicates.add(builder.greaterThan(root.get("id"), after));
+        }
+        query.select(root).where(predicates.toArray(new Predicate[0])).orderBy(builder.asc(root.get("id")));
+
+        return fetchSlice(query, 0, PageRequest.of(0, size, Sort.by("id")));
+    }
+
+    @Override
+    public Page<Book> findPage(Example<Book> example, Pageable pageable) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Book> query = builder.createQuery(Book.class);
+        Root<Book> root = query.from(Book.class);
+
+        Predicate examplePredicate = QueryByExamplePredicateBuilder.getPredicate(root, builder, example);
+        if(examplePredicate != null) {
+            query.where(examplePredicate);
+        }
+        query.select(root).orderBy(QueryUtils.toOrders(pageable.getSort(), root, builder));
+
+        TypedQuery<Book> typedQuery = cacheable(entityManager.createQuery(query));
+        if(pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset()).setMaxResults(pageable.getPageSize());
+        }
+        return PageableExecutionUtils.getPage(typedQuery.getResultList(), pageable, () -> count(example));
+    }
+
+    @Override
+    public Slice<Book> findSlice(Example<Book> example, Pageable pageable) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Book> query = builder.createQuery(Book.class);
+        Root<Book> root = query.from(Book.class);
+
+        Predicate examplePredicate = QueryByExamplePredicateBuilder.getPredicate(root, builder, example);
+        if(examplePredicate != null) {
+            query.where(examplePredicate);
+        }
+        query.select(root).orderBy(QueryUtils.toOrders(pageable.getSort(), root, builder));
+
+        return fetchSlice(query, (int) pageable.getOffset(), pageable);
+    }
+
+    @Override
+    public Stream<Book> streamAll() {
+        return entityManager.createQuery("select b from Book b order by b.id", Book.class)
+                .setHint(HINT_FETCH_SIZE, 1000)
+                .setHint(HINT_READONLY, true)
+                .getResultStream()
+                .peek(entityManager::detach);
+    }
+
+    /**
+     * Fetches one row more than the page size: its presence tells whether there is a next slice without
+     * running a COUNT query.
+     */
+    private Slice<Book> fetchSlice(CriteriaQuery<Book> query, int offset, Pageable pageable) {
+        int size = pageable.getPageSize();
+        List<Book> books = cacheable(entityManager.createQuery(query)).setFirstResult(offset).setMaxResults(size + 1).getResultList();
+        boolean hasNext = books.size() > size;
+        List<Book> content = hasNext ? books.subList(0, size) : books;
+
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    private long count(Example<Book> example) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        Root<Book> root = query.from(Book.class);
+
+        Predicate examplePredicate = QueryByExamplePredicateBuilder.getPredicate(root, builder, example);
+        if(examplePredicate != null) {
+            query.where(examplePredicate);
+        }
+        query.select(builder.count(root));
+
+        return cacheable(entityManager.createQuery(query)).getSingleResult();
+    }
+
+    /**
+     * Only takes effect with {@code library.second-level-cache.enabled=true}; otherwise Hibernate ignores the hints.
+     */
+    private static <T> TypedQuery<T> cacheable(TypedQuery<T> query) {
+        return query.setHint(HINT_CACHEABLE, true).setHint(HINT_CACHE_REGION, BookRepository.QUERY_CACHE_REGION);
+    }
+}
@@ -0,0 +1,111 @@
+package com.sparsis.libraryapi.repository;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.sparsis.libraryapi.model.entity.Book;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.persistence.EntityManagerFactory;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Caches books by id and the results of list queries in Hibernate's second-level cache when
+ * {@code library.second-level-cache.enabled=true}, over size and TTL bounded Caffeine regions. Hibernate keeps
+ * both consistent with writes made through it: saves update the cached book, bulk updates and deletes drop the
+ * book region, and any write to BOOK makes the cached query results stale.
+ * <p>
+ * Hibernate turns the cache on by itself when it finds a single region factory on the class path, as it does
+ * with hibernate-jcache. application.properties therefore switches it off for every context, including test slices
+ * that do not load this configuration, and only the property switches it on here.
+ */
+@Configuration
+@EnableConfigurationProperties(SecondLevelCacheProperties.class)
+public class SecondLevelCacheConfiguration {
+
+    static final String HIT_RATIO = "library.book.cache.hit_ratio";
+
+    /**
+     * Sharding runs the same SQL with the same parameters on every shard, so cached query results could not
+     * tell the shards apart; only books by id, whose ids are unique across shards, are cached then.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(SecondLevelCacheProperties properties,
+                                                                    @Value("${library.sharding.enabled:false}") boolean sharding) {
+        return hibernateProperties -> {
+            if(!properties.isEnabled()) {
+                return;
+            }
+            hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            hibernateProperties.put(AvailableSettings.USE_QUERY_CACHE, !sharding);
+            hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER, createCacheManager(properties));
+            hibernateProperties.put(AvailableSettings.GENERATE_STATISTICS, true);
+        };
+    }
+
+    /**
+     * Hit ratio of each region since start up. The session factory is only looked up when a gauge is read,
+     * so binding the meters does not initialize JPA early.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "library.second-level-cache.enabled", havingValue = "true")
+    public MeterBinder secondLevelCacheMetrics(ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        return registry -> {
+            hitRatio(registry, entityManagerFactory, Book.CACHE_REGION, statistics -> statistics.getDomainDataRegionStatistics(Book.CACHE_REGION));
+            hitRatio(registry, entityManagerFactory, BookRepository.QUERY_CACHE_REGION,
+                    statistics -> statistics.getQueryRegionStatistics(BookRepository.QUERY_CACHE_REGION));
+        };
+    }
+
+    /**
+     * Hibernate closes the cache manager together with the session factory. The random URI keeps the managers
+     * of separate application contexts in one JVM, as in tests, apart.
+     */
+    private static CacheManager createCacheManager(SecondLevelCacheProperties properties) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("library-second-level-cache:" + UUID.randomUUID()), SecondLevelCacheConfiguration.class.getClassLoader());
+        cacheManager.createCache(Book.CACHE_REGION, region(properties.getEntity()));
+        cacheManager.createCache(BookRepository.QUERY_CACHE_REGION, region(properties.getQuery()));
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, region(properties.getQuery()));
+        // Update timestamps tell whether cached query results are stale, so they are never evicted; it is one entry per table
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, new CaffeineConfiguration<>());
+        return cacheManager;
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(SecondLevelCacheProperties.Region properties) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(properties.getMaximumSize()));
+        configuration.setExpireAfterWrite(OptionalLong.of(properties.getExpireAfterWrite().toNanos()));
+        return configuration;
+    }
+
+    private static void hitRatio(MeterRegistry registry, ObjectProvider<EntityManagerFactory> entityManagerFactory, String region,
+                                 Function<Statistics, CacheRegionStatistics> regionStatistics) {
+        Gauge.builder(HIT_RATIO, entityManagerFactory, provider -> {
+            Statistics statistics = provider.getObject().unwrap(SessionFactory.class).getStatistics();
+            CacheRegionStatistics stats = regionStatistics.apply(statistics);
+            long requests = stats == null ? 0 : stats.getHitCount() + stats.getMissCount();
+            return requests == 0 ? Double.NaN : (double) stats.getHitCount() / requests;
+        }).tag("region", region).register(registry);
+    }
+}
@@ -0,0 +1,33 @@
+package com.sparsis.libraryapi.repository;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("library.second-level-cache")
+public class SecondLevelCacheProperties {
+
+    private boolean enabled;
+
+    private Region entity = new Region(10000, Duration.ofMinutes(10));
+
+    private Region query = new Region(1000, Duration.ofMinutes(10));
+
+    @Data
+    public static class Region {
+
+        private long maximumSize;
+
+        private Duration expireAfterWrite;
+
+        public Region() {
+        }
+
+        Region(long maximumSize, Duration expireAfterWrite) {
+            this.maximumSize = maximumSize;
+            this.expireAfterWrite = expireAfterWrite;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.sparsis.libraryapi.repository;
+
+import com.sparsis.libraryapi.model.Isbn;
+
+import java.nio.charset.StandardCharsets;
+import java.util.OptionalLong;
+import java.util.zip.CRC32;
+
+/**
+ * Shard placement of books. A book lives on the shard of its ISBN hash, and its ID carries that shard in the bits
+ * above {@link #SHARD_SHIFT}, so ID lookups go to one shard without a directory. IDs of shard 0 are the plain
+ * sequence values, and with at most {@link #MAX_SHARDS} shards every ID stays below 2^53 (exact in JSON numbers).
+ */
+public final class ShardKeys {
+
+    public static final int MAX_SHARDS = 32;
+
+    static final int SHARD_SHIFT = 48;
+
+    private static final long SEQUENCE_MASK = (1L << SHARD_SHIFT) - 1;
+
+    private ShardKeys() {
+    }
+
+    public static long id(int shard, long sequence) {
+        if(sequence > SEQUENCE_MASK) {
+            throw new IllegalStateException("Book sequence exhausted on shard " + shard);
+        }
+        return ((long) shard << SHARD_SHIFT) | sequence;
+    }
+
+    public static int ofId(long id) {
+        return (int) (id >>> SHARD_SHIFT);
+    }
+
+    /**
+     * Valid ISBNs are placed by their ISBN-13 number, so every spelling of an ISBN lands on the same shard as
+     * a lookup by {@link #ofIsbnNumber(long, int)}; anything else by its text.
+     */
+    public static int ofIsbn(String isbn, int shards) {
+        if(isbn == null) {
+            return 0;
+        }
+        OptionalLong number = Isbn.parse(isbn);
+        if(number.isPresent()) {
+            return ofIsbnNumber(number.getAsLong(), shards);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(isbn.getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % shards);
+    }
+
+    public static int ofIsbnNumber(long isbnNumber, int shards) {
+        CRC32 crc = new CRC32();
+        crc.update(Long.toString(isbnNumber).getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % shards);
+    }
+}
@@ -0,0 +1,491 @@
+package com.sparsis.libraryapi.repository;
+
+import com.sparsis.libraryapi.datasource.ShardContext;
+import com.sparsis.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityNotFoundException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Shard-aware front of {@link BookRepository}. Calls keyed by an ID, ISBN, ISBN number or book run on that book's
+ * shard; calls keyed by collections are split per shard; list queries run on all shards in parallel, and their
+ * sorted results are k-way merged.
+ * <p>
+ * A transaction's connection is bound to a single shard. A call joins the caller's transaction when the caller
+ * opened it on the call's shard (see {@link ShardContext#call}), so several writes to one shard, and the outbox
+ * entries that go with them, commit together. Any other shard call runs in a transaction of its own
+ * (REQUIRES_NEW), so writes spanning shards are not atomic.
+ */
+public class ShardedBookRepository implements BookRepository {
+
+    private static final Map<String, Function<Book, Comparable<?>>> SORT_PROPERTIES = Map.of(
+            "id", Book::getId,
+            "title", Book::getTitle,
+            "author", Book::getAuthor,
+            "isbn", Book::getIsbn,
+            "isbnNumber", Book::getIsbnNumber,
+            "version", Book::getVersion);
+
+    private static final Comparator<Book> BY_ID = Comparator.comparing(Book::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final BookRepository target;
+
+    private final int shards;
+
+    private final PlatformTransactionManager transactionManager;
+
+    private final TransactionTemplate readTransaction;
+
+    private final TransactionTemplate writeTransaction;
+
+    private final ExecutorService executor;
+
+    public ShardedBookRepository(BookRepository target, int shards, PlatformTransactionManager transactionManager, ExecutorService executor) {
+        this.target = target;
+        this.shards = shards;
+        this.transactionManager = transactionManager;
+        this.readTransaction = new TransactionTemplate(transactionManager, definition(true));
+        this.writeTransaction = new TransactionTemplate(transactionManager, definition(false));
+        this.executor = executor;
+    }
+
+    @Override
+    public <S extends Book> S save(S book) {
+        return onShard(shardOf(book), false, () -> target.save(book));
+    }
+
+    @Override
+    public <S extends Book> S saveAndFlush(S book) {
+        return onShard(shardOf(book), false, () -> target.saveAndFlush(book));
+    }
+
+    /**
+     * Saves each shard's books in one call to that shard. The result is in the order of {@code books}.
+     */
+    @Override
+    public <S extends Book> List<S> saveAll(Iterable<S> books) {
+        List<S> input = new ArrayList<>();
+        books.forEach(input::add);
+        Map<Integer, List<Integer>> positions = byShard(input, this::shardOf);
+
+        List<S> saved = new ArrayList<>(input);
+        positions.forEach((shard, indexes) -> {
+            List<S> shardBooks = indexes.stream().map(input::get).collect(Collectors.toList());
+            List<S> shardSaved = onShard(shard, false, () -> target.saveAll(shardBooks));
+            for(int i = 0; i < indexes.size(); i++) {
+                saved.set(indexes.get(i), shardSaved.get(i));
+            }
+        });
+        return saved;
+    }
+
+    @Override
+    public void flush() {
+        target.flush();
+    }
+
+    @Override
+    public Optional<Book> findById(Long id) {
+        return onShard(shardOfId(id), true, () -> target.findById(id));
+    }
+
+    /**
+     * Loads the book instead of returning a lazy reference, which could not be initialized once the shard's
+     * transaction has ended.
+     */
+    @Override
+    public Book getOne(Long id) {
+        return findById(id).orElseThrow(() -> new EntityNotFoundException("Unable to find Book with id " + id));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return onShard(shardOfId(id), true, () -> target.existsById(id));
+    }
+
+    @Override
+    public boolean existsByIsbn(String isbn) {
+        return onShard(ShardKeys.ofIsbn(isbn, shards), true, () -> target.existsByIsbn(isbn));
+    }
+
+    @Override
+    public Optional<Book> findByIsbnNumber(Long isbnNumber) {
+        return onShard(ShardKeys.ofIsbnNumber(isbnNumber, shards), true, () -> target.findByIsbnNumber(isbnNumber));
+    }
+
+    @Override
+    public List<Book> findAllById(Iterable<Long> ids) {
+        List<Long> input = new ArrayList<>();
+        ids.forEach(input::add);
+        List<Book> books = new ArrayList<>();
+        byShard(input, this::shardOfId).forEach((shard, indexes) -> {
+            List<Long> shardIds = indexes.stream().map(input::get).collect(Collectors.toList());
+            books.addAll(onShard(shard, true, () -> target.findAllById(shardIds)));
+        });
+        return books;
+    }
+
+    @Override
+    public Set<String> findExistingIsbns(Collection<String> isbns) {
+        List<String> input = new ArrayList<>(isbns);
+        Set<String> existing = new HashSet<>();
+        byShard(input, isbn -> ShardKeys.ofIsbn(isbn, shards)).forEach((shard, indexes) -> {
+            Set<String> shardIsbns = indexes.stream().map(input::get).collect(Collectors.toSet());
+            existing.addAll(onShard(shard, true, () -> target.findExistingIsbns(shardIsbns)));
+        });
+        return existing;
+    }
+
+    @Override
+    public int updateTitleAndAuthor(Long id, String title, String author) {
+        return onShard(shardOfId(id), false, () -> target.updateTitleAndAuthor(id, title, author));
+    }
+
+    @Override
+    public int updateTitleAndAuthor(Long id, String title, String author, Long version) {
+        return onShard(shardOfId(id), false, () -> target.updateTitleAndAuthor(id, title, author, version));
+    }
+
+    @Override
+    public int deleteBookById(Long id) {
+        return onShard(shardOfId(id), false, () -> target.deleteBookById(id));
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        onShard(shardOfId(id), false, () -> {
+            target.deleteById(id);
+            return null;
+        });
+    }
+
+    @Override
+    public void delete(Book book) {
+        onShard(shardOf(book), false, () -> {
+            target.delete(book);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends Book> books) {
+        List<Book> input = new ArrayList<>();
+        books.forEach(input::add);
+        byShard(input, this::shardOf).forEach((shard, indexes) -> {
+            List<Book> shardBooks = indexes.stream().map(input::get).collect(Collectors.toList());
+            onShard(shard, false, () -> {
+                target.deleteAll(shardBooks);
+                return null;
+            });
+        });
+    }
+
+    @Override
+    public void deleteInBatch(Iterable<Book> books) {
+        List<Book> input = new ArrayList<>();
+        books.forEach(input::add);
+        byShard(input, this::shardOf).forEach((shard, indexes) -> {
+            List<Book> shardBooks = indexes.stream().map(input::get).collect(Collectors.toList());
+            onShard(shard, false, () -> {
+                target.deleteInBatch(shardBooks);
+                return null;
+            });
+        });
+    }
+
+    @Override
+    public void deleteAll() {
+        scatter(false, () -> {
+            target.deleteAll();
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAllInBatch() {
+        scatter(false, () -> {
+            target.deleteAllInBatch();
+            return null;
+        });
+    }
+
+    @Override
+    public long count() {
+        return scatter(true, target::count).stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public <S extends Book> long count(Example<S> example) {
+        return scatter(true, () -> target.count(example)).stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public <S extends Book> boolean exists(Example<S> example) {
+        return scatter(true, () -> target.exists(example)).contains(true);
+    }
+
+    @Override
+    public <S extends Book> Optional<S> findOne(Example<S> example) {
+        return scatter(true, () -> target.findOne(example)).stream()
+                .filter(Optional::isPresent)
+                .findFirst()
+                .orElse(Optional.empty());
+    }
+
+    @Override
+    public List<Book> findAll() {
+        return concat(scatter(true, target::findAll));
+    }
+
+    @Override
+    public List<Book> findAll(Sort sort) {
+        Comparator<Book> comparator = comparator(sort);
+        return merge(scatter(true, () -> target.findAll(shardSort(sort))), comparator, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Page<Book> findAll(Pageable pageable) {
+        return page(pageable, shardPageable -> target.findAll(shardPageable));
+    }
+
+    @Override
+    public <S extends Book> List<S> findAll(Example<S> example) {
+        return concat(scatter(true, () -> target.findAll(example)));
+    }
+
+    @Override
+    public <S extends Book> List<S> findAll(Example<S> example, Sort sort) {
+        Comparator<Book> comparator = comparator(sort);
+        return merge(scatter(true, () -> target.findAll(example, shardSort(sort))), comparator, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public <S extends Book> Page<S> findAll(Example<S> example, Pageable pageable) {
+        return page(pageable, shardPageable -> target.findAll(example, shardPageable));
+    }
+
+    @Override
+    public Page<Book> findPage(Example<Book> example, Pageable pageable) {
+        return page(pageable, shardPageable -> target.findPage(example, shardPageable));
+    }
+
+    @Override
+    public Slice<Book> findSlice(Example<Book> example, Pageable pageable) {
+        Comparator<Book> comparator = comparator(pageable.getSort());
+        List<Slice<Book>> slices = scatter(true, () -> target.findSlice(example, shardPageable(pageable)));
+        return slice(slices, pageable, comparator);
+    }
+
+    @Override
+    public Slice<Book> findAfter(Example<Book> example, Long after, int size) {
+        List<Slice<Book>> slices = scatter(true, () -> target.findAfter(example, after, size));
+        return slice(slices, PageRequest.of(0, size, Sort.by("id")), BY_ID);
+    }
+
+    /**
+     * Streams the shards one after the other. A shard's transaction stays open while its books are consumed and is
+     * committed when the stream is closed; flatMap closes each shard's stream before opening the next.
+     */
+    @Override
+    public Stream<Book> streamAll() {
+        return IntStream.range(0, shards).boxed().flatMap(this::openStream);
+    }
+
+    private Stream<Book> openStream(int shard) {
+        return ShardContext.call(shard, () -> {
+            TransactionStatus status = transactionManager.getTransaction(definition(true));
+            try {
+                return target.streamAll().onClose(() -> transactionManager.commit(status));
+            } catch(RuntimeException ex) {
+                transactionManager.rollback(status);
+                throw ex;
+            }
+        });
+    }
+
+    /**
+     * Page n of the merged result can only be built from the first offset + size rows of every shard.
+     */
+    private <S extends Book> Page<S> page(Pageable pageable, Function<Pageable, Page<S>> query) {
+        Comparator<Book> comparator = comparator(pageable.getSort());
+        List<Page<S>> pages = scatter(true, () -> query.apply(shardPageable(pageable)));
+        long total = pages.stream().mapToLong(Page::getTotalElements).sum();
+        List<List<S>> contents = pages.stream().map(Page::getContent).collect(Collectors.toList());
+        if(pageable.isUnpaged()) {
+            return new PageImpl<>(sorted(concat(contents), comparator), pageable, total);
+        }
+        return new PageImpl<>(merge(contents, comparator, (int) pageable.getOffset(), pageable.getPageSize()), pageable, total);
+    }
+
+    private static Slice<Book> slice(List<Slice<Book>> slices, Pageable pageable, Comparator<Book> comparator) {
+        if(pageable.isUnpaged()) {
+            return new SliceImpl<>(sorted(concat(slices.stream().map(Slice::getContent).collect(Collectors.toList())), comparator));
+        }
+        int size = pageable.getPageSize();
+        List<Book> content = merge(slices.stream().map(Slice::getContent).collect(Collectors.toList()), comparator,
+                (int) pageable.getOffset(), size + 1);
+        boolean hasNext = content.size() > size || slices.stream().anyMatch(Slice::hasNext);
+        return new SliceImpl<>(content.subList(0, Math.min(size, content.size())), pageable, hasNext);
+    }
+
+    /**
+     * An unpaged request has no sort to pass on, so its rows are sorted after they are gathered.
+     */
+    private static Pageable shardPageable(Pageable pageable) {
+        return pageable.isPaged() ? PageRequest.of(0, (int) pageable.getOffset() + pageable.getPageSize(), shardSort(pageable.getSort())) : pageable;
+    }
+
+    /**
+     * The order {@link #merge} relies on: the requested one broken by ID, or the ID alone. Without it every shard
+     * returns rows in whatever order its plan yields, and pages overlap or skip books.
+     */
+    private static Sort shardSort(Sort sort) {
+        if(sort.isUnsorted()) {
+            return Sort.by("id");
+        }
+        return sort.getOrderFor("id") != null ? sort : sort.and(Sort.by("id"));
+    }
+
+    private static <S extends Book> List<S> sorted(List<S> books, Comparator<Book> comparator) {
+        books.sort(comparator);
+        return books;
+    }
+
+    private static <T> List<T> concat(List<List<T>> lists) {
+        return lists.stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+
+    /**
+     * K-way merge of lists that are each sorted by {@code comparator}, skipping {@code offset} rows and keeping at
+     * most {@code limit}.
+     */
+    private static <S extends Book> List<S> merge(List<List<S>> lists, Comparator<Book> comparator, int offset, int limit) {
+        int[] positions = new int[lists.size()];
+        List<S> merged = new ArrayList<>(Math.min(limit, lists.stream().mapToInt(List::size).sum()));
+        int skipped = 0;
+        while(merged.size() < limit) {
+            int next = -1;
+            for(int i = 0; i < lists.size(); i++) {
+                if(positions[i] < lists.get(i).size() && (next < 0
+                        || comparator.compare(lists.get(i).get(positions[i]), lists.get(next).get(positions[next])) < 0)) {
+                    next = i;
+                }
+            }
+            if(next < 0) {
+                break;
+            }
+            S book = lists.get(next).get(positions[next]++);
+            if(skipped < offset) {
+                skipped++;
+            } else {
+                merged.add(book);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * The order of {@code sort}, then by ID, as {@link #shardSort} asks the shards for. Nulls sort as in H2 unless
+     * the order says otherwise: lower than any value, so first when ascending and last when descending. Built once
+     * per query, before the shards are asked.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<Book> comparator(Sort sort) {
+        Comparator<Book> comparator = null;
+        for(Sort.Order order : sort) {
+            Function<Book, Comparable> property = (Function) SORT_PROPERTIES.get(order.getProperty());
+            if(property == null) {
+                throw new IllegalArgumentException("Cannot merge books sorted by " + order.getProperty());
+            }
+            Comparator<Comparable> values = order.isAscending() ? Comparator.naturalOrder() : Comparator.reverseOrder();
+            boolean nullsFirst = order.getNullHandling() == Sort.NullHandling.NATIVE
+                    ? order.isAscending()
+                    : order.getNullHandling() == Sort.NullHandling.NULLS_FIRST;
+            values = nullsFirst ? Comparator.nullsFirst(values) : Comparator.nullsLast(values);
+            Comparator<Book> next = Comparator.comparing(property, values);
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator == null ? BY_ID : comparator.thenComparing(BY_ID);
+    }
+
+    /**
+     * Runs the query on every shard in parallel, each in a read or write transaction of its own.
+     */
+    private <T> List<T> scatter(boolean readOnly, Supplier<T> query) {
+        List<CompletableFuture<T>> futures = IntStream.range(0, shards)
+                .mapToObj(shard -> CompletableFuture.supplyAsync(StatementCounter.counting(() -> onShard(shard, readOnly, query)), executor))
+                .collect(Collectors.toList());
+        try {
+            return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+        } catch(CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : ex;
+        }
+    }
+
+    private <T> T onShard(int shard, boolean readOnly, Supplier<T> action) {
+        if(TransactionSynchronizationManager.isActualTransactionActive() && ShardContext.current() == shard) {
+            return action.get();
+        }
+        TransactionTemplate transaction = readOnly ? readTransaction : writeTransaction;
+        return ShardContext.call(shard, () -> transaction.execute(status -> action.get()));
+    }
+
+    /**
+     * Indexes of {@code keys} grouped by shard, each group in the order of {@code keys}.
+     */
+    private static <K> Map<Integer, List<Integer>> byShard(List<K> keys, ToIntFunction<K> shardOf) {
+        Map<Integer, List<Integer>> positions = new LinkedHashMap<>();
+        for(int i = 0; i < keys.size(); i++) {
+            positions.computeIfAbsent(shardOf.applyAsInt(keys.get(i)), shard -> new ArrayList<>()).add(i);
+        }
+        return positions;
+    }
+
+    private static TransactionDefinition definition(boolean readOnly) {
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        definition.setReadOnly(readOnly);
+        return definition;
+    }
+
+    /**
+     * An ID of a shard that does not exist cannot match anything; any shard answers "not found".
+     */
+    private int shardOfId(Long id) {
+        return id == null ? 0 : Math.floorMod(ShardKeys.ofId(id), shards);
+    }
+
+    private int shardOf(Book book) {
+        return book.getId() != null ? shardOfId(book.getId()) : ShardKeys.ofIsbn(book.getIsbn(), shards);
+    }
+}
@@ -0,0 +1,47 @@
+package com.sparsis.libraryapi.repository;
+
+import com.sparsis.libraryapi.datasource.ShardContext;
+import org.hibernate.MappingException;
+import org.hibernate.boot.model.relational.Database;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Properties;
+
+/**
+ * Pooled sequence per shard: each shard has its own BOOK_SEQ, and the value is prefixed with the shard of the
+ * current transaction (see {@link ShardKeys}). The optimizers are kept per shard so a block fetched from one
+ * shard's sequence is never handed out on another.
+ */
+public class ShardedSequenceGenerator extends SequenceStyleGenerator {
+
+    private final SequenceStyleGenerator[] shards = new SequenceStyleGenerator[ShardKeys.MAX_SHARDS];
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        super.configure(type, params, serviceRegistry);
+        shards[0] = this;
+        for(int shard = 1; shard < shards.length; shard++) {
+            shards[shard] = new SequenceStyleGenerator();
+            shards[shard].configure(type, params, serviceRegistry);
+        }
+    }
+
+    @Override
+    public void registerExportables(Database database) {
+        super.registerExportables(database);
+        for(int shard = 1; shard < shards.length; shard++) {
+            shards[shard].registerExportables(database);
+        }
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        int shard = ShardContext.current();
+        Number sequence = shard == 0 ? (Number) super.generate(session, object) : (Number) shards[shard].generate(session, object);
+        return ShardKeys.id(shard, sequence.longValue());
+    }
+}
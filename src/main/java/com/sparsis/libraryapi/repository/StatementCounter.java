@@ -0,0 +1,48 @@
+package com.sparsis.libraryapi.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread. Registered through
+ * {@code hibernate.session_factory.statement_inspector}, so Hibernate creates the instance and the
+ * counter itself has to be static. Work handed to other threads, like the per-shard queries of
+ * {@link ShardedBookRepository}, counts towards the caller when it runs through {@link #counting(Supplier)}.
+ */
+public class StatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<AtomicInteger> COUNT = ThreadLocal.withInitial(AtomicInteger::new);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get().incrementAndGet();
+        return sql;
+    }
+
+    public static void reset() {
+        COUNT.set(new AtomicInteger());
+    }
+
+    public static int count() {
+        return COUNT.get().get();
+    }
+
+    /**
+     * Wraps {@code action} so that the statements it prepares, on whichever thread it runs, count towards the
+     * current thread.
+     */
+    public static <T> Supplier<T> counting(Supplier<T> action) {
+        AtomicInteger count = COUNT.get();
+        return () -> {
+            AtomicInteger previous = COUNT.get();
+            COUNT.set(count);
+            try {
+                return action.get();
+            } finally {
+                COUNT.set(previous);
+            }
+        };
+    }
+}
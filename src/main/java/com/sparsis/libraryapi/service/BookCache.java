@@ -0,0 +1,84 @@
+package com.sparsis.libraryapi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sparsis.libraryapi.datasource.PrimaryReads;
+import com.sparsis.libraryapi.model.entity.Book;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Size and TTL bounded read-through cache of books by id. Entries are stored and handed out as copies, so
+ * callers mutating a returned book can never change what other readers see. Hit, miss and eviction
+ * statistics are published as the "books" cache metrics.
+ */
+@Component
+public class BookCache implements MeterBinder {
+
+    private final Cache<Long, Book> cache;
+
+    public BookCache(@Value("${library.cache.books.maximum-size:10000}") long maximumSize,
+                     @Value("${library.cache.books.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Loading happens atomically per id, and an invalidation issued while a load is running waits for it,
+     * so a value read before a write commits can never outlive the write's invalidation. Loads read from the
+     * primary: a replica's row may predate a committed write whose invalidation has already run.
+     */
+    public Optional<Book> get(Long id, Function<Long, Optional<Book>> loader) {
+        Book book = cache.get(id, key -> PrimaryReads.call(() -> loader.apply(key)).map(BookCache::copy).orElse(null));
+        return Optional.ofNullable(book).map(BookCache::copy);
+    }
+
+    public Optional<Book> getIfPresent(Long id) {
+        return Optional.ofNullable(cache.getIfPresent(id)).map(BookCache::copy);
+    }
+
+    /**
+     * Drops the cached book once the surrounding transaction, if any, has committed.
+     */
+    public void invalidate(Long id) {
+        if(id == null) {
+            return;
+        }
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(id);
+                }
+            });
+        } else {
+            cache.invalidate(id);
+        }
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "books");
+    }
+
+    private static Book copy(Book book) {
+        return book.toBuilder().build();
+    }
+}
@@ -0,0 +1,305 @@
+package com.sparsis.libraryapi.service;
+
+import com.sparsis.libraryapi.model.entity.BookChange;
+import com.sparsis.libraryapi.repository.BookChangeRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Change feed over the BOOK_CHANGE outbox. Changes are recorded in the transaction of the write, and read back in
+ * sequence order from a consumer's last sequence number. A single thread finds out when there is something to deliver:
+ * right after a local commit, and every {@code poll-interval} for changes committed by other instances. Delivery runs
+ * on a pool of {@code delivery-threads}, one task per subscription at a time, so a consumer stuck on a slow client
+ * holds up neither the other subscribers nor the dispatcher and the purge.
+ * <p>
+ * Sequence numbers are taken when a change is written, not when it commits, so a later number can become visible
+ * first. A read therefore stops before a missing number until the change after it is older than {@code gap-timeout},
+ * after which its transaction is taken to have rolled back. That only holds for transactions shorter than the gap
+ * timeout, so writes that record changes run in {@link #write(Supplier)}, which times them out after
+ * {@code transaction-timeout}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "library.changes.enabled", havingValue = "true")
+public class BookChangeFeed implements MeterBinder {
+
+    private final BookChangeRepository repository;
+
+    private final TransactionTemplate writeTransaction;
+
+    private final Duration pollInterval;
+
+    private final Duration gapTimeout;
+
+    private final Duration retention;
+
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    private final AtomicBoolean dispatchPending = new AtomicBoolean();
+
+    /**
+     * Lowest sequence number still stored, as of the last purge; consumers behind it have missed changes.
+     */
+    private volatile long firstSeq = 1;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "book-changes");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Holds at most one task per subscription, since a subscription only has one scheduled at a time.
+     */
+    private final ThreadPoolExecutor delivery;
+
+    public BookChangeFeed(BookChangeRepository repository, TransactionTemplate transactionTemplate,
+                          @Value("${library.changes.poll-interval:1s}") Duration pollInterval,
+                          @Value("${library.changes.gap-timeout:10s}") Duration gapTimeout,
+                          @Value("${library.changes.transaction-timeout:5s}") Duration transactionTimeout,
+                          @Value("${library.changes.retention:7d}") Duration retention,
+                          @Value("${library.changes.delivery-threads:8}") int deliveryThreads) {
+        // Transaction timeouts are whole seconds
+        long timeoutSeconds = (transactionTimeout.toMillis() + 999) / 1000;
+        if(timeoutSeconds <= 0 || Duration.ofSeconds(timeoutSeconds).compareTo(gapTimeout) >= 0) {
+            throw new IllegalStateException("library.changes.transaction-timeout must be at least 1s and shorter than library.changes.gap-timeout");
+        }
+        this.repository = repository;
+        this.writeTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.writeTransaction.setTimeout((int) timeoutSeconds);
+        this.pollInterval = pollInterval;
+        this.gapTimeout = gapTimeout;
+        this.retention = retention;
+        this.delivery = new ThreadPoolExecutor(deliveryThreads, deliveryThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "book-changes-delivery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.delivery.allowCoreThreadTimeOut(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::purgeQuietly, 0, 1, TimeUnit.HOURS);
+        scheduler.scheduleWithFixedDelay(this::dispatch, pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        delivery.shutdownNow();
+    }
+
+    /**
+     * Runs a write and the changes it records in one transaction, which fails once it takes longer than
+     * {@code transaction-timeout}.
+     */
+    public <T> T write(Supplier<T> write) {
+        return writeTransaction.execute(status -> write.get());
+    }
+
+    /**
+     * Adds the change to the outbox of the current transaction, which should be one of {@link #write(Supplier)};
+     * subscribers are woken once it commits.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(BookChange.Type type, Long bookId, Long bookVersion) {
+        repository.save(BookChange.builder().type(type).bookId(bookId).bookVersion(bookVersion).changedAt(Instant.now()).build());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                signal();
+            }
+        });
+    }
+
+    /**
+     * Returns up to {@code limit} changes after {@code since}, in sequence order and without gaps that may still
+     * be filled by a running transaction.
+     */
+    public List<BookChange> read(long since, int limit) {
+        List<BookChange> changes = repository.findAfter(since, PageRequest.of(0, limit));
+        Instant settled = Instant.now().minus(gapTimeout);
+        List<BookChange> batch = new ArrayList<>(changes.size());
+        long expected = since + 1;
+        for(BookChange change : changes) {
+            if(change.getSeq() != expected && change.getChangedAt().isAfter(settled)) {
+                break;
+            }
+            batch.add(change);
+            expected = change.getSeq() + 1;
+        }
+        return batch;
+    }
+
+    /**
+     * Sequence number of the newest change, where a consumer that only wants changes from now on starts.
+     */
+    public long lastSeq() {
+        Long lastSeq = repository.findLastSeq();
+        return lastSeq == null ? 0 : lastSeq;
+    }
+
+    /**
+     * Whether changes right after {@code since} were already purged, so a consumer resuming there has missed some.
+     */
+    public boolean isExpired(long since) {
+        return since + 1 < firstSeq;
+    }
+
+    /**
+     * Hands every batch of changes after {@code since} to the consumer, on a delivery thread and one batch at a
+     * time, for as long as it returns true. The returned subscription must be cancelled when the consumer goes away.
+     */
+    public Subscription subscribe(long since, int limit, Predicate<List<BookChange>> consumer) {
+        Subscription subscription = new Subscription(since, limit, consumer);
+        subscriptions.add(subscription);
+        signal();
+        return subscription;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("library.book.changes.subscriptions", subscriptions, Set::size)
+                .register(registry);
+    }
+
+    private void signal() {
+        if(dispatchPending.compareAndSet(false, true)) {
+            scheduler.execute(this::dispatch);
+        }
+    }
+
+    private void dispatch() {
+        dispatchPending.set(false);
+        if(subscriptions.isEmpty()) {
+            return;
+        }
+        try {
+            Long lastSeq = repository.findLastSeq();
+            for(Subscription subscription : subscriptions) {
+                if(lastSeq != null && subscription.since < lastSeq) {
+                    subscription.schedule();
+                }
+            }
+        } catch(RuntimeException ex) {
+            // Subscribers keep their position; the next poll tries again
+            log.warn("Could not dispatch book changes", ex);
+        }
+    }
+
+    private void purgeQuietly() {
+        try {
+            repository.deleteChangedBefore(Instant.now().minus(retention));
+            Long first = repository.findFirstSeq();
+            if(first != null) {
+                firstSeq = first;
+            }
+        } catch(RuntimeException ex) {
+            log.warn("Could not purge book changes", ex);
+        }
+    }
+
+    public class Subscription {
+
+        private final int limit;
+
+        private final Predicate<List<BookChange>> consumer;
+
+        private volatile long since;
+
+        /**
+         * Set when there may be changes to deliver; cleared by the delivery task before it reads.
+         */
+        private final AtomicBoolean pending = new AtomicBoolean();
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Subscription(long since, int limit, Predicate<List<BookChange>> consumer) {
+            this.since = since;
+            this.limit = limit;
+            this.consumer = consumer;
+        }
+
+        public void cancel() {
+            subscriptions.remove(this);
+        }
+
+        private void schedule() {
+            pending.set(true);
+            if(scheduled.compareAndSet(false, true)) {
+                try {
+                    delivery.execute(this::run);
+                } catch(RejectedExecutionException ex) {
+                    // Shutting down
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        private void run() {
+            try {
+                while(pending.getAndSet(false) && subscriptions.contains(this)) {
+                    deliver();
+                }
+            } catch(RuntimeException ex) {
+                // The subscription keeps its position; the next poll tries again
+                log.warn("Could not deliver book changes", ex);
+            } finally {
+                scheduled.set(false);
+            }
+            // A dispatch that came in after the last read but before the flag was cleared
+            if(pending.get() && subscriptions.contains(this)) {
+                schedule();
+            }
+        }
+
+        /**
+         * Delivers batches until the consumer caught up, so a backlog goes out without waiting for further polls.
+         */
+        private void deliver() {
+            List<BookChange> batch;
+            do {
+                batch = read(since, limit);
+                if(batch.isEmpty()) {
+                    return;
+                }
+                since = batch.get(batch.size() - 1).getSeq();
+                if(!consumer.test(batch)) {
+                    cancel();
+                    return;
+                }
+            } while(batch.size() == limit && subscriptions.contains(this));
+        }
+    }
+}
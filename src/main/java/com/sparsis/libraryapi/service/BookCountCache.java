@@ -0,0 +1,51 @@
+package com.sparsis.libraryapi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sparsis.libraryapi.model.entity.Book;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Short-lived totals per book filter, used to answer list requests that accept an approximate count.
+ * A total is counted once per filter and TTL, and corrected whenever a page reveals the exact value.
+ */
+@Component
+public class BookCountCache implements MeterBinder {
+
+    private final Cache<List<String>, Long> cache;
+
+    public BookCountCache(@Value("${library.cache.counts.maximum-size:1000}") long maximumSize,
+                          @Value("${library.cache.counts.expire-after-write:1m}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    public long get(Book filter, LongSupplier counter) {
+        return cache.get(key(filter), key -> counter.getAsLong());
+    }
+
+    public void put(Book filter, long total) {
+        cache.put(key(filter), total);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "book-counts");
+    }
+
+    private static List<String> key(Book filter) {
+        return Arrays.asList(filter.getTitle(), filter.getAuthor(), filter.getIsbn());
+    }
+}
@@ -0,0 +1,25 @@
+package com.sparsis.libraryapi.service;
+
+import com.sparsis.libraryapi.model.entity.Book;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+public class BookSaveResult {
+    private final Book book;
+    private final String error;
+
+    public static BookSaveResult saved(Book book) {
+        return new BookSaveResult(book, null);
+    }
+
+    public static BookSaveResult rejected(Book book, String error) {
+        return new BookSaveResult(book, error);
+    }
+
+    public boolean isSaved() {
+        return error == null;
+    }
+}
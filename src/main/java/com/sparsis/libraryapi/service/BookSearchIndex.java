@@ -0,0 +1,164 @@
+package com.sparsis.libraryapi.service;
+
+import com.sparsis.libraryapi.model.entity.Book;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory inverted index over book titles and authors. Text is folded to lower case without accents
+ * and split into terms; a query term matches a book exactly, as a prefix of one of its terms, or within a
+ * small edit distance. Every query term has to match, and books are ranked by how well they match.
+ */
+@Component
+public class BookSearchIndex {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    private static final int TITLE_WEIGHT = 2;
+    private static final int AUTHOR_WEIGHT = 1;
+    private static final int EXACT_SCORE = 3;
+    private static final int PREFIX_SCORE = 2;
+    private static final int FUZZY_SCORE = 1;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private final ConcurrentSkipListMap<String, Map<Long, Integer>> postings = new ConcurrentSkipListMap<>();
+    private final Map<Long, Set<String>> documentTerms = new ConcurrentHashMap<>();
+
+    public synchronized void index(Book book) {
+        if(book.getId() == null) {
+            return;
+        }
+        remove(book.getId());
+
+        Map<String, Integer> weights = new HashMap<>();
+        tokenize(book.getTitle()).forEach(term -> weights.merge(term, TITLE_WEIGHT, Integer::sum));
+        tokenize(book.getAuthor()).forEach(term -> weights.merge(term, AUTHOR_WEIGHT, Integer::sum));
+
+        weights.forEach((term, weight) -> postings.computeIfAbsent(term, key -> new ConcurrentHashMap<>()).put(book.getId(), weight));
+        documentTerms.put(book.getId(), weights.keySet());
+    }
+
+    /**
+     * Indexes the book unless it is already indexed, so an older copy never replaces what a write indexed.
+     */
+    public synchronized void indexIfAbsent(Book book) {
+        if(book.getId() != null && !documentTerms.containsKey(book.getId())) {
+            index(book);
+        }
+    }
+
+    public synchronized void remove(Long id) {
+        Set<String> terms = id == null ? null : documentTerms.remove(id);
+        if(terms == null) {
+            return;
+        }
+        for(String term : terms) {
+            postings.computeIfPresent(term, (key, documents) -> {
+                documents.remove(id);
+                return documents.isEmpty() ? null : documents;
+            });
+        }
+    }
+
+    /**
+     * Returns the ids of the best matching books, best first.
+     */
+    public List<Long> search(String query, int limit) {
+        List<String> queryTerms = tokenize(query);
+        if(queryTerms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Integer> scores = null;
+        for(String queryTerm : queryTerms) {
+            Map<Long, Integer> termScores = scoreTerm(queryTerm);
+            if(scores == null) {
+                scores = termScores;
+            } else {
+                scores.keySet().retainAll(termScores.keySet());
+                scores.replaceAll((id, score) -> score + termScores.get(id));
+            }
+            if(scores.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    public int size() {
+        return documentTerms.size();
+    }
+
+    private Map<Long, Integer> scoreTerm(String queryTerm) {
+        Map<Long, Integer> scores = new HashMap<>();
+
+        Map<Long, Integer> exactMatches = postings.get(queryTerm);
+        if(exactMatches != null) {
+            exactMatches.forEach((id, weight) -> scores.merge(id, EXACT_SCORE * weight, Math::max));
+        }
+
+        postings.subMap(queryTerm, false, queryTerm + Character.MAX_VALUE, false).values().stream()
+                .limit(MAX_PREFIX_EXPANSIONS)
+                .forEach(documents -> documents.forEach((id, weight) -> scores.merge(id, PREFIX_SCORE * weight, Math::max)));
+
+        int maxEdits = queryTerm.length() >= 8 ? 2 : queryTerm.length() >= 4 ? 1 : 0;
+        if(maxEdits > 0) {
+            // Typos in the first letter are rare enough that restricting candidates to it keeps the scan short
+            String first = queryTerm.substring(0, 1);
+            postings.subMap(first, true, first + Character.MAX_VALUE, false).forEach((term, documents) -> {
+                if(!term.equals(queryTerm) && Math.abs(term.length() - queryTerm.length()) <= maxEdits
+                        && withinEditDistance(queryTerm, term, maxEdits)) {
+                    documents.forEach((id, weight) -> scores.merge(id, FUZZY_SCORE * weight, Math::max));
+                }
+            });
+        }
+        return scores;
+    }
+
+    static List<String> tokenize(String text) {
+        if(text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String folded = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        return Arrays.stream(SEPARATORS.split(folded)).filter(term -> !term.isEmpty()).collect(Collectors.toList());
+    }
+
+    /**
+     * Levenshtein distance that gives up as soon as every alignment exceeds {@code maxEdits}.
+     */
+    static boolean withinEditDistance(String source, String target, int maxEdits) {
+        int[] previous = new int[target.length() + 1];
+        int[] current = new int[target.length() + 1];
+        for(int j = 0; j <= target.length(); j++) {
+            previous[j] = j;
+        }
+        for(int i = 1; i <= source.length(); i++) {
+            current[0] = i;
+            int rowMinimum = current[0];
+            for(int j = 1; j <= target.length(); j++) {
+                int substitution = previous[j - 1] + (source.charAt(i - 1) == target.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+            if(rowMinimum > maxEdits) {
+                return false;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[target.length()] <= maxEdits;
+    }
+}
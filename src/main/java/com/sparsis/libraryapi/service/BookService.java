@@ -3,15 +3,26 @@ package com.sparsis.libraryapi.service;
 import com.sparsis.libraryapi.model.entity.Book;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 public interface BookService {
     Book save(Book book);
+    List<BookSaveResult> saveAll(List<Book> books);
     Optional<Book> findById(Long id);
-    void delete(Long id);
-    Book update(Book book);
+    Optional<Book> findByIsbn(String isbn);
+    List<Book> findAllById(List<Long> ids);
+    boolean delete(Long id);
+    Optional<Book> update(Book book);
     Page<Book> find(Book book, Pageable pageRequest);
+    Slice<Book> findSlice(Book book, Pageable pageRequest);
+    Page<Book> findWithApproximateCount(Book book, Pageable pageRequest);
+    Slice<Book> findAfter(Book book, Long after, int size);
+    List<Book> search(String query, int limit);
+    void export(Consumer<Book> consumer);
 }
@@ -1,56 +1,509 @@
 package com.sparsis.libraryapi.service;
 
+import com.sparsis.libraryapi.datasource.ShardContext;
+import com.sparsis.libraryapi.datasource.ShardingProperties;
 import com.sparsis.libraryapi.exception.BusinessException;
+import com.sparsis.libraryapi.model.Isbn;
 import com.sparsis.libraryapi.model.entity.Book;
+import com.sparsis.libraryapi.model.entity.BookChange;
 import com.sparsis.libraryapi.repository.BookRepository;
+import com.sparsis.libraryapi.repository.ShardKeys;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+@Slf4j
 @Service
 public class BookServiceImpl implements BookService {
 
+    private static final String SERVICE_TIMER = "library.book.service";
+
     @Autowired
     private BookRepository repository;
 
-    public BookServiceImpl(BookRepository repository) {
+    @Autowired
+    private IsbnFilter isbnFilter;
+
+    @Autowired
+    private BookCache bookCache;
+
+    @Autowired
+    private BookCountCache countCache;
+
+    @Autowired
+    private BookSearchIndex searchIndex;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired(required = false)
+    private BookSnapshotStore snapshotStore;
+
+    @Autowired(required = false)
+    private IsbnIndex isbnIndex;
+
+    @Autowired(required = false)
+    private BookChangeFeed changeFeed;
+
+    @Autowired(required = false)
+    private ShardingProperties shardingProperties;
+
+    public BookServiceImpl(BookRepository repository, IsbnFilter isbnFilter, BookCache bookCache, BookCountCache countCache,
+                           BookSearchIndex searchIndex, TransactionTemplate transactionTemplate) {
         this.repository = repository;
+        this.isbnFilter = isbnFilter;
+        this.bookCache = bookCache;
+        this.countCache = countCache;
+        this.searchIndex = searchIndex;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Starts the warm-up on a thread of its own, so a large catalog does not hold up the ready event. Until it
+     * finishes, saves of ISBNs it has not reached yet are left to the unique constraint, lookups by ISBN fall back
+     * to the query and searches may miss books.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWarmUp() {
+        Thread thread = new Thread(() -> {
+            try {
+                warmUp();
+            } catch(RuntimeException ex) {
+                log.warn("Could not warm up the ISBN filter and the book indexes", ex);
+            }
+        }, "book-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Fills the ISBN filter, the search index and the ISBN index in a single pass over the catalog. Books written
+     * since the warm-up started are already indexed with their new state, so the search index keeps that entry.
+     */
+    void warmUp() {
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnlyTransaction.setReadOnly(true);
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try(Stream<Book> books = repository.streamAll()) {
+                books.forEach(book -> {
+                    isbnFilter.put(book.getIsbn());
+                    searchIndex.indexIfAbsent(book);
+                    indexIsbn(book);
+                });
+            }
+        });
     }
 
     @Override
+    @Timed(SERVICE_TIMER)
     public Book save(Book book) {
-        if(repository.existsByIsbn(book.getIsbn())) {
+        // Only ISBNs that may already exist need the existence query; the unique constraint covers the rest
+        if(mightExist(book.getIsbn()) && repository.existsByIsbn(book.getIsbn())) {
+            throw new BusinessException("Duplicated ISBN");
+        }
+        try {
+            Book savedBook = withChange(shardOfIsbn(book.getIsbn()), () -> {
+                Book saved = repository.save(book);
+                recordChange(BookChange.Type.CREATED, saved.getId(), saved.getVersion());
+                return saved;
+            });
+            isbnFilter.put(savedBook.getIsbn());
+            indexIsbn(savedBook);
+            bookCache.invalidate(savedBook.getId());
+            searchIndex.index(savedBook);
+            return savedBook;
+        } catch(DataIntegrityViolationException ex) {
             throw new BusinessException("Duplicated ISBN");
         }
-        return repository.save(book);
     }
 
+    /**
+     * Inserts the books of each shard in one transaction bound to that shard, which the repository and the outbox
+     * join, so a shard's part of the chunk commits or rolls back as a whole. Without sharding, the chunk is one
+     * transaction. Results are in the order of {@code books}.
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    public List<BookSaveResult> saveAll(List<Book> books) {
+        BookSaveResult[] results = new BookSaveResult[books.size()];
+        Map<Integer, List<Integer>> positions = new LinkedHashMap<>();
+        for(int i = 0; i < books.size(); i++) {
+            positions.computeIfAbsent(shardOfIsbn(books.get(i).getIsbn()), shard -> new ArrayList<>()).add(i);
+        }
+        positions.forEach((shard, indexes) -> {
+            List<Book> shardBooks = indexes.stream().map(books::get).collect(Collectors.toList());
+            List<BookSaveResult> shardResults = saveAll(shard, shardBooks);
+            for(int i = 0; i < indexes.size(); i++) {
+                results[indexes.get(i)] = shardResults.get(i);
+            }
+        });
+        return Arrays.asList(results);
+    }
+
+    private List<BookSaveResult> saveAll(int shard, List<Book> books) {
+        List<BookSaveResult> results;
+        try {
+            results = ShardContext.call(shard, () -> changeFeed == null
+                    ? transactionTemplate.execute(status -> insertAll(books))
+                    : changeFeed.write(() -> insertAll(books)));
+        } catch(DataIntegrityViolationException ex) {
+            // A concurrent writer took one of the ISBNs after the check; retry this shard's books one by one so only
+            // that record fails. The other shards' transactions have committed and are not run again.
+            return books.stream().map(this::saveOne).collect(Collectors.toList());
+        }
+        results.stream().filter(BookSaveResult::isSaved).map(BookSaveResult::getBook).forEach(book -> {
+            isbnFilter.put(book.getIsbn());
+            indexIsbn(book);
+            searchIndex.index(book);
+        });
+        return results;
+    }
+
+    private List<BookSaveResult> insertAll(List<Book> books) {
+        Set<String> candidates = books.stream().map(Book::getIsbn).filter(isbnFilter::mightContain).collect(Collectors.toSet());
+        Set<String> existingIsbns = candidates.isEmpty() ? Collections.emptySet() : repository.findExistingIsbns(candidates);
+
+        Set<String> chunkIsbns = new HashSet<>();
+        List<Book> accepted = new ArrayList<>(books.size());
+        List<BookSaveResult> results = new ArrayList<>(books.size());
+        for(Book book : books) {
+            if(existingIsbns.contains(book.getIsbn()) || !chunkIsbns.add(book.getIsbn())) {
+                results.add(BookSaveResult.rejected(book, "Duplicated ISBN"));
+            } else {
+                accepted.add(book);
+                results.add(BookSaveResult.saved(book));
+            }
+        }
+        repository.saveAll(accepted);
+        accepted.forEach(book -> recordChange(BookChange.Type.CREATED, book.getId(), book.getVersion()));
+        repository.flush();
+        return results;
+    }
+
+    private BookSaveResult saveOne(Book book) {
+        book.setId(null);
+        book.setVersion(null);
+        try {
+            return BookSaveResult.saved(save(book));
+        } catch(BusinessException ex) {
+            return BookSaveResult.rejected(book, ex.getMessage());
+        }
+    }
+
+    /**
+     * Answered from the snapshot when one is enabled and the book was not written since; otherwise from the
+     * cache, which loads through the repository's own read-only transaction.
+     */
     @Override
+    @Timed(SERVICE_TIMER)
     public Optional<Book> findById(Long id) {
-       return repository.findById(id);
+        if(snapshotStore != null) {
+            Optional<Book> book = snapshotStore.findById(id);
+            if(book.isPresent()) {
+                return book;
+            }
+        }
+        return bookCache.get(id, repository::findById);
+    }
+
+    /**
+     * Returns the books found, in the order of the given ids and without duplicates. Books in the snapshot or
+     * the cache are taken from there, and all others are read with a single IN query. The loaded books are not
+     * put in the cache, since a bulk load could not be ordered against concurrent invalidations.
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    public List<Book> findAllById(List<Long> ids) {
+        Map<Long, Book> books = new LinkedHashMap<>();
+        List<Long> remaining = new ArrayList<>();
+        for(Long id : ids) {
+            if(id == null || books.containsKey(id)) {
+                continue;
+            }
+            Optional<Book> book = snapshotStore != null ? snapshotStore.findById(id) : Optional.empty();
+            if(!book.isPresent()) {
+                book = bookCache.getIfPresent(id);
+            }
+            books.put(id, book.orElse(null));
+            if(!book.isPresent()) {
+                remaining.add(id);
+            }
+        }
+        if(!remaining.isEmpty()) {
+            repository.findAllById(remaining).forEach(book -> books.put(book.getId(), book));
+        }
+        return books.values().stream().filter(Objects::nonNull).collect(Collectors.toList());
     }
 
+    /**
+     * Accepts ISBN-10 and ISBN-13 in any spelling. With the ISBN index enabled, a known ISBN resolves to an id
+     * and is read like {@link #findById(Long)}; unknown or stale entries fall back to the ISBN_NUMBER index.
+     */
     @Override
-    public void delete(Long id) throws IllegalArgumentException {
+    @Timed(SERVICE_TIMER)
+    public Optional<Book> findByIsbn(String isbn) {
+        long isbnNumber = Isbn.parse(isbn).orElseThrow(() -> new BusinessException("Invalid ISBN"));
+        if(isbnIndex != null) {
+            long id = isbnIndex.get(isbnNumber);
+            if(id != IsbnIndex.NO_ID) {
+                Optional<Book> book = findById(id);
+                if(book.isPresent() && Isbn.parse(book.get().getIsbn()).orElse(0) == isbnNumber) {
+                    return book;
+                }
+            }
+        }
+        return repository.findByIsbnNumber(isbnNumber);
+    }
+
+    /**
+     * Issues a single DELETE and reports whether a row was removed. The ISBN filter is only decremented when
+     * the book happens to be cached; otherwise its ISBN stays a harmless false positive of the filter.
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    public boolean delete(Long id) throws IllegalArgumentException {
         if(id == null) {
             throw new IllegalArgumentException("ID cannot be null");
         }
-        repository.deleteById(id);
+        Optional<String> isbn = bookCache.getIfPresent(id).map(Book::getIsbn);
+        boolean deleted = markingDirty(id, () -> withChange(shardOfId(id), () -> {
+            boolean removed = repository.deleteBookById(id) > 0;
+            if(removed) {
+                recordChange(BookChange.Type.DELETED, id, null);
+            }
+            return removed;
+        }));
+        bookCache.invalidate(id);
+        searchIndex.remove(id);
+        if(deleted) {
+            isbn.ifPresent(isbnFilter::remove);
+            if(isbnIndex != null) {
+                isbn.ifPresent(value -> Isbn.parse(value).ifPresent(isbnNumber -> isbnIndex.remove(isbnNumber, id)));
+            }
+        }
+        return deleted;
     }
 
+    /**
+     * Issues a single conditional UPDATE of title and author; when the book carries a version, the UPDATE only
+     * applies to that version. Returns the updated book, or empty when no book has the given id. The new state is
+     * built from the request instead of being read back: the UPDATE wrote the title, the author and, with a
+     * version, the next version. The ISBN never changes, so it is taken from the snapshot or the cache when the book
+     * is there and left out otherwise. Without a version the UPDATE may land on a write this request never saw, so
+     * the new version is unknown and left out too.
+     */
     @Override
-    public Book update(Book book) {
+    @Timed(SERVICE_TIMER)
+    public Optional<Book> update(Book book) {
         if(book == null || book.getId() == null) {
             throw new IllegalArgumentException("ID cannot be null");
         }
-        return repository.save(book);
+        // Taken before the write marks the book dirty in the snapshot
+        Optional<Book> known = findKnown(book.getId());
+        int updatedRows = markingDirty(book.getId(), () -> withChange(shardOfId(book.getId()), () -> {
+            int rows = book.getVersion() == null
+                    ? repository.updateTitleAndAuthor(book.getId(), book.getTitle(), book.getAuthor())
+                    : repository.updateTitleAndAuthor(book.getId(), book.getTitle(), book.getAuthor(), book.getVersion());
+            if(rows > 0) {
+                recordChange(BookChange.Type.UPDATED, book.getId(), book.getVersion() == null ? null : book.getVersion() + 1);
+            }
+            return rows;
+        }));
+        bookCache.invalidate(book.getId());
+
+        if(updatedRows == 0) {
+            // The version check is the only way a present book is not updated, so only then is a lookup needed
+            if(book.getVersion() != null && repository.existsById(book.getId())) {
+                throw new OptimisticLockingFailureException("Book was modified by another request");
+            }
+            return Optional.empty();
+        }
+        Book updatedBook = known.map(Book::toBuilder).orElseGet(Book::builder)
+                .id(book.getId())
+                .title(book.getTitle())
+                .author(book.getAuthor())
+                .titleKey(Book.searchKey(book.getTitle()))
+                .authorKey(Book.searchKey(book.getAuthor()))
+                .version(book.getVersion() == null ? null : book.getVersion() + 1)
+                .build();
+        searchIndex.index(updatedBook);
+        return Optional.of(updatedBook);
+    }
+
+    private Optional<Book> findKnown(Long id) {
+        Optional<Book> book = snapshotStore != null ? snapshotStore.findById(id) : Optional.empty();
+        return book.isPresent() ? book : bookCache.getIfPresent(id);
     }
 
     @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(readOnly = true)
     public Page<Book> find(Book book, Pageable pageRequest) {
-        return null;
+        return repository.findPage(createExample(book), pageRequest);
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(readOnly = true)
+    public Slice<Book> findSlice(Book book, Pageable pageRequest) {
+        return repository.findSlice(createExample(book), pageRequest);
+    }
+
+    /**
+     * Serves the page without a COUNT query: the total comes from the count cache, and is only counted
+     * when the filter is not cached yet. A page that reaches the end of the results reveals the exact total,
+     * which then replaces the cached one.
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(readOnly = true)
+    public Page<Book> findWithApproximateCount(Book book, Pageable pageRequest) {
+        Example<Book> example = createExample(book);
+        Slice<Book> slice = repository.findSlice(example, pageRequest);
+        long seen = pageRequest.getOffset() + slice.getNumberOfElements();
+
+        long total;
+        if(!slice.hasNext() && (slice.hasContent() || pageRequest.getOffset() == 0)) {
+            total = seen;
+            countCache.put(book, total);
+        } else {
+            total = countCache.get(book, () -> repository.count(example));
+            if(slice.hasNext()) {
+                total = Math.max(total, seen + 1);
+            }
+        }
+        return new PageImpl<>(slice.getContent(), pageRequest, total);
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(readOnly = true)
+    public Slice<Book> findAfter(Book book, Long after, int size) {
+        return repository.findAfter(createExample(book), after, size);
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(readOnly = true)
+    public List<Book> search(String query, int limit) {
+        List<Long> ids = searchIndex.search(query, limit);
+        if(ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, Book> books = repository.findAllById(ids).stream().collect(Collectors.toMap(Book::getId, Function.identity()));
+        return ids.stream().map(books::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(readOnly = true)
+    public void export(Consumer<Book> consumer) {
+        try(Stream<Book> books = repository.streamAll()) {
+            books.forEach(consumer);
+        }
+    }
+
+    /**
+     * The snapshot may be stale, so an ISBN found in it only earns the existence query and is never taken as
+     * proof; one missing from it is left to the unique constraint, like an ISBN the filter does not know.
+     */
+    private boolean mightExist(String isbn) {
+        return isbnFilter.mightContain(isbn) && (snapshotStore == null || snapshotStore.findByIsbn(isbn).isPresent());
+    }
+
+    private void indexIsbn(Book book) {
+        if(isbnIndex != null && book.getIsbnNumber() != null) {
+            isbnIndex.put(book.getIsbnNumber(), book.getId());
+        }
+    }
+
+    /**
+     * With the change feed enabled, runs the write in a transaction of its own on the book's shard, so its outbox
+     * entry commits or rolls back with it. Without it, the repository's transaction is enough.
+     */
+    private <T> T withChange(int shard, Supplier<T> write) {
+        return changeFeed == null ? write.get() : ShardContext.call(shard, () -> changeFeed.write(write));
+    }
+
+    private int shardOfIsbn(String isbn) {
+        return shardingProperties == null ? 0 : ShardKeys.ofIsbn(isbn, shardingProperties.getShards().size());
+    }
+
+    private int shardOfId(Long id) {
+        return shardingProperties == null ? 0 : Math.floorMod(ShardKeys.ofId(id), shardingProperties.getShards().size());
+    }
+
+    private void recordChange(BookChange.Type type, Long id, Long version) {
+        if(changeFeed != null) {
+            changeFeed.record(type, id, version);
+        }
+    }
+
+    /**
+     * Marks the book dirty in the snapshot before the write and again after it, so a refresh that read the row
+     * before the write committed cannot clear the mark.
+     */
+    private <T> T markingDirty(Long id, Supplier<T> write) {
+        markDirty(id);
+        try {
+            return write.get();
+        } finally {
+            markDirty(id);
+        }
+    }
+
+    private void markDirty(Long id) {
+        if(snapshotStore != null) {
+            snapshotStore.markDirty(id);
+        }
+    }
+
+    /**
+     * Title and author are matched by case-insensitive prefix and ISBN exactly. The prefixes are matched against
+     * the lower-case TITLE_KEY and AUTHOR_KEY, so {@code TITLE_KEY like 'term%'} is served by IDX_BOOK_TITLE and
+     * IDX_BOOK_AUTHOR, and the ISBN by its unique index.
+     */
+    private Example<Book> createExample(Book book) {
+        Book probe = Book.builder()
+                .titleKey(Book.searchKey(book.getTitle()))
+                .authorKey(Book.searchKey(book.getAuthor()))
+                .isbn(book.getIsbn())
+                .build();
+        ExampleMatcher matcher = ExampleMatcher.matching()
+                .withIgnoreNullValues()
+                .withIgnorePaths("id")
+                .withMatcher("titleKey", ExampleMatcher.GenericPropertyMatchers.startsWith())
+                .withMatcher("authorKey", ExampleMatcher.GenericPropertyMatchers.startsWith())
+                .withMatcher("isbn", ExampleMatcher.GenericPropertyMatchers.exact());
+        return Example.of(probe, matcher);
     }
 }
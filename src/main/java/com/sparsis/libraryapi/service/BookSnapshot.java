@@ -0,0 +1,299 @@
+package com.sparsis.libraryapi.service;
+
+import com.sparsis.libraryapi.model.entity.Book;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Read-only catalog file, memory-mapped so lookups read the page cache instead of the heap. Layout:
+ * <pre>
+ * records     id, version, title, author, isbn (strings as unsigned short length + UTF-8)
+ * id index    (id, record offset) pairs, sorted by id, binary searched
+ * isbn index  open addressing table of (isbn hash, record offset + 1) slots, linear probing, at most half full
+ * footer      magic, count, id index offset, isbn index offset, isbn slots, created at
+ * </pre>
+ * Books are only decoded when found, so a lookup allocates one {@link Book} and nothing else.
+ */
+public final class BookSnapshot {
+
+    private static final long MAGIC = 0x4C49425241525931L;
+
+    private static final int FOOTER_SIZE = 6 * Long.BYTES;
+
+    private static final int ENTRY_SIZE = 2 * Long.BYTES;
+
+    private static final int NULL_STRING = 0xFFFF;
+
+    private static final long NULL_VERSION = Long.MIN_VALUE;
+
+    private final ByteBuffer buffer;
+
+    private final int count;
+
+    private final int idIndexOffset;
+
+    private final int isbnIndexOffset;
+
+    private final int isbnSlots;
+
+    private final long createdAt;
+
+    private BookSnapshot(ByteBuffer buffer, int count, int idIndexOffset, int isbnIndexOffset, int isbnSlots, long createdAt) {
+        this.buffer = buffer;
+        this.count = count;
+        this.idIndexOffset = idIndexOffset;
+        this.isbnIndexOffset = isbnIndexOffset;
+        this.isbnSlots = isbnSlots;
+        this.createdAt = createdAt;
+    }
+
+    public static BookSnapshot open(Path file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Book snapshot larger than 2 GB: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int footer = buffer.capacity() - FOOTER_SIZE;
+            if(footer < 0 || buffer.getLong(footer) != MAGIC) {
+                throw new IllegalStateException("Not a book snapshot: " + file);
+            }
+            return new BookSnapshot(buffer, (int) buffer.getLong(footer + 8), (int) buffer.getLong(footer + 16),
+                    (int) buffer.getLong(footer + 24), (int) buffer.getLong(footer + 32), buffer.getLong(footer + 40));
+        }
+    }
+
+    /**
+     * Writes the books, which must come ordered by id, to a temporary file and moves it over {@code file}, so
+     * readers of the previous snapshot keep their mapping. The ISBN table is filled in a mapped region of the
+     * file rather than on the heap.
+     */
+    public static void write(Path file, Stream<Book> books) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        LongArray ids = new LongArray();
+        LongArray offsets = new LongArray();
+
+        long idIndexOffset = 0;
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            Iterator<Book> iterator = books.iterator();
+            while(iterator.hasNext()) {
+                Book book = iterator.next();
+                if(ids.size > 0 && book.getId() <= ids.get(ids.size - 1)) {
+                    throw new IllegalArgumentException("Books must be ordered by id");
+                }
+                ids.add(book.getId());
+                offsets.add(idIndexOffset);
+
+                out.writeLong(book.getId());
+                out.writeLong(book.getVersion() == null ? NULL_VERSION : book.getVersion());
+                idIndexOffset += 2 * Long.BYTES;
+                idIndexOffset += writeString(out, book.getTitle());
+                idIndexOffset += writeString(out, book.getAuthor());
+                idIndexOffset += writeString(out, book.getIsbn());
+            }
+            for(int i = 0; i < ids.size; i++) {
+                out.writeLong(ids.get(i));
+                out.writeLong(offsets.get(i));
+            }
+        }
+
+        long isbnIndexOffset = idIndexOffset + (long) ids.size * ENTRY_SIZE;
+        int slots = Integer.highestOneBit(Math.max(2, ids.size * 2 - 1)) << 1;
+        long footerOffset = isbnIndexOffset + (long) slots * ENTRY_SIZE;
+        if(footerOffset + FOOTER_SIZE > Integer.MAX_VALUE) {
+            Files.delete(temporary);
+            throw new IllegalStateException("Book snapshot larger than 2 GB");
+        }
+
+        try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, footerOffset + FOOTER_SIZE);
+            BookSnapshot snapshot = new BookSnapshot(mapped, ids.size, (int) idIndexOffset, (int) isbnIndexOffset, slots, 0);
+            for(int i = 0; i < ids.size; i++) {
+                int offset = (int) offsets.get(i);
+                long hash = hash(snapshot.isbnBytes(offset));
+                int slot = slot(hash, slots);
+                while(mapped.getLong((int) isbnIndexOffset + slot * ENTRY_SIZE + Long.BYTES) != 0) {
+                    slot = (slot + 1) & (slots - 1);
+                }
+                mapped.putLong((int) isbnIndexOffset + slot * ENTRY_SIZE, hash);
+                mapped.putLong((int) isbnIndexOffset + slot * ENTRY_SIZE + Long.BYTES, offset + 1L);
+            }
+
+            int footer = (int) footerOffset;
+            mapped.putLong(footer, MAGIC);
+            mapped.putLong(footer + 8, ids.size);
+            mapped.putLong(footer + 16, idIndexOffset);
+            mapped.putLong(footer + 24, isbnIndexOffset);
+            mapped.putLong(footer + 32, slots);
+            mapped.putLong(footer + 40, System.currentTimeMillis());
+            mapped.force();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public Optional<Book> findById(long id) {
+        int low = 0;
+        int high = count - 1;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = buffer.getLong(idIndexOffset + middle * ENTRY_SIZE);
+            if(middleId < id) {
+                low = middle + 1;
+            } else if(middleId > id) {
+                high = middle - 1;
+            } else {
+                return Optional.of(read((int) buffer.getLong(idIndexOffset + middle * ENTRY_SIZE + Long.BYTES)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    public Optional<Book> findByIsbn(String isbn) {
+        if(isbn == null) {
+            return Optional.empty();
+        }
+        byte[] bytes = utf8(isbn);
+        long hash = hash(bytes);
+        int slot = slot(hash, isbnSlots);
+        while(true) {
+            int entry = isbnIndexOffset + slot * ENTRY_SIZE;
+            long offset = buffer.getLong(entry + Long.BYTES) - 1;
+            if(offset < 0) {
+                return Optional.empty();
+            }
+            if(buffer.getLong(entry) == hash && isbnEquals((int) offset, bytes)) {
+                return Optional.of(read((int) offset));
+            }
+            slot = (slot + 1) & (isbnSlots - 1);
+        }
+    }
+
+    private boolean isbnEquals(int offset, byte[] isbn) {
+        int position = skipString(skipString(offset + 2 * Long.BYTES));
+        int length = buffer.getShort(position) & 0xFFFF;
+        if(length != isbn.length) {
+            return false;
+        }
+        for(int i = 0; i < length; i++) {
+            if(buffer.get(position + 2 + i) != isbn[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] isbnBytes(int offset) {
+        int position = skipString(skipString(offset + 2 * Long.BYTES));
+        int length = buffer.getShort(position) & 0xFFFF;
+        byte[] bytes = new byte[length == NULL_STRING ? 0 : length];
+        for(int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(position + 2 + i);
+        }
+        return bytes;
+    }
+
+    private Book read(int offset) {
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset);
+        long id = record.getLong();
+        long version = record.getLong();
+        return Book.builder()
+                .id(id)
+                .version(version == NULL_VERSION ? null : version)
+                .title(readString(record))
+                .author(readString(record))
+                .isbn(readString(record))
+                .build();
+    }
+
+    private int skipString(int position) {
+        int length = buffer.getShort(position) & 0xFFFF;
+        return position + 2 + (length == NULL_STRING ? 0 : length);
+    }
+
+    private static String readString(ByteBuffer record) {
+        int length = record.getShort() & 0xFFFF;
+        if(length == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int writeString(DataOutputStream out, String value) throws IOException {
+        if(value == null) {
+            out.writeShort(NULL_STRING);
+            return 2;
+        }
+        byte[] bytes = utf8(value);
+        if(bytes.length >= NULL_STRING) {
+            throw new IllegalArgumentException("String too long for a book snapshot");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+        return 2 + bytes.length;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * FNV-1a with a murmur finalizer, so the low bits used for the slot are well mixed.
+     */
+    private static long hash(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for(byte b : bytes) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static int slot(long hash, int slots) {
+        return (int) (hash & (slots - 1));
+    }
+
+    private static final class LongArray {
+
+        private long[] values = new long[1024];
+
+        private int size;
+
+        void add(long value) {
+            if(size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long get(int index) {
+            return values[index];
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.sparsis.libraryapi.service;
+
+import com.sparsis.libraryapi.model.entity.Book;
+import com.sparsis.libraryapi.repository.BookRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the current {@link BookSnapshot} and rebuilds it from the database every {@code refresh-interval}.
+ * Books written through this instance since the snapshot was taken are tracked as dirty and are never answered
+ * from the snapshot, so those reads fall through to the database. Writes made by other instances become visible
+ * with the next refresh.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "library.snapshot.enabled", havingValue = "true")
+public class BookSnapshotStore implements MeterBinder {
+
+    private final BookRepository repository;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final Path file;
+
+    private final Duration refreshInterval;
+
+    private final AtomicReference<BookSnapshot> snapshot = new AtomicReference<>();
+
+    /**
+     * Dirty ids, each with the write mark it was last touched at. A refresh only forgets marks taken before it
+     * started reading, since later writes may be missing from the file.
+     */
+    private final Map<Long, Long> dirty = new ConcurrentHashMap<>();
+
+    private final AtomicLong writeMarks = new AtomicLong();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "book-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BookSnapshotStore(BookRepository repository, TransactionTemplate transactionTemplate,
+                             @Value("${library.snapshot.file:${java.io.tmpdir}/library-catalog.bin}") Path file,
+                             @Value("${library.snapshot.refresh-interval:5m}") Duration refreshInterval) {
+        this.repository = repository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransaction.setReadOnly(true);
+        this.file = file;
+        this.refreshInterval = refreshInterval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Streams the catalog into a new file and swaps it in. The previous snapshot stays mapped until it is
+     * garbage collected, so lookups running during the swap are not affected.
+     */
+    public void refresh() {
+        long startMark = writeMarks.get();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try(Stream<Book> books = repository.streamAll()) {
+                BookSnapshot.write(file, books);
+            } catch(IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+        try {
+            snapshot.set(BookSnapshot.open(file));
+        } catch(IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        dirty.values().removeIf(mark -> mark <= startMark);
+    }
+
+    /**
+     * Stops serving the book from the snapshot. Writers call it before the write and again after the write has
+     * returned, so a refresh that read the database before the commit cannot clear the mark. Inside a transaction,
+     * the mark is also taken again once the transaction completes.
+     */
+    public void markDirty(Long id) {
+        if(id == null) {
+            return;
+        }
+        dirty.put(id, writeMarks.incrementAndGet());
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    dirty.put(id, writeMarks.incrementAndGet());
+                }
+            });
+        }
+    }
+
+    public Optional<Book> findById(Long id) {
+        BookSnapshot current = snapshot.get();
+        if(current == null || id == null || dirty.containsKey(id)) {
+            return Optional.empty();
+        }
+        return current.findById(id);
+    }
+
+    public Optional<Book> findByIsbn(String isbn) {
+        BookSnapshot current = snapshot.get();
+        if(current == null) {
+            return Optional.empty();
+        }
+        return current.findByIsbn(isbn).filter(book -> !dirty.containsKey(book.getId()));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("library.book.snapshot.size", snapshot, current -> current.get() == null ? 0 : current.get().size())
+                .baseUnit("books")
+                .register(registry);
+        Gauge.builder("library.book.snapshot.dirty", dirty, Map::size)
+                .baseUnit("books")
+                .register(registry);
+        Gauge.builder("library.book.snapshot.age", snapshot, current -> current.get() == null
+                        ? Double.NaN : (System.currentTimeMillis() - current.get().getCreatedAt()) / 1000.0)
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch(RuntimeException ex) {
+            // Keep serving the previous snapshot; the next run tries again
+            log.warn("Could not refresh the book snapshot", ex);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.sparsis.libraryapi.service;
+
+import com.sparsis.libraryapi.exception.BusinessException;
+import com.sparsis.libraryapi.model.entity.Book;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Group commit for single creates: concurrent {@link #save(Book)} calls are collected for up to
+ * {@code max-wait} or {@code max-batch} books and written with one {@link BookService#saveAll(List)} call,
+ * i.e. one ISBN IN query, one JDBC batch and one commit. Each caller still gets its own book or its own
+ * "Duplicated ISBN" error, exactly as with {@link BookService#save(Book)}.
+ */
+@Component
+@ConditionalOnProperty(name = "library.coalescer.enabled", havingValue = "true")
+public class BookWriteCoalescer implements MeterBinder {
+
+    private final BookService service;
+
+    private final int maxBatch;
+
+    private final long maxWaitNanos;
+
+    private final Duration timeout;
+
+    private final BlockingQueue<PendingSave> queue;
+
+    private final Thread flusher;
+
+    private volatile boolean running = true;
+
+    private volatile DistributionSummary batchSizes;
+
+    public BookWriteCoalescer(BookService service,
+                              @Value("${library.coalescer.max-batch:100}") int maxBatch,
+                              @Value("${library.coalescer.max-wait:2ms}") Duration maxWait,
+                              @Value("${library.coalescer.queue-capacity:10000}") int queueCapacity,
+                              @Value("${library.coalescer.timeout:30s}") Duration timeout) {
+        this.service = service;
+        this.maxBatch = maxBatch;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.timeout = timeout;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flusher = new Thread(this::run, "book-write-coalescer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Blocks until the batch holding the book is committed, for at most {@code timeout}. A full queue blocks the
+     * caller as well, which pushes back on clients instead of growing without bound. Fails at once after
+     * shutdown, or when the flusher has stopped.
+     */
+    public Book save(Book book) {
+        if(!running) {
+            throw new IllegalStateException("Book write coalescer is stopped");
+        }
+        PendingSave pending = new PendingSave(book);
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            if(!queue.offer(pending, timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new IllegalStateException("Book write coalescer queue stayed full for " + timeout);
+            }
+            return pending.result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the book to be saved", ex);
+        } catch(TimeoutException ex) {
+            // Still queued, or in a batch whose commit is late; the book may yet be saved
+            throw new IllegalStateException("Book was not saved within " + timeout, ex);
+        } catch(ExecutionException ex) {
+            throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : new IllegalStateException(ex.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        batchSizes = DistributionSummary.builder("library.book.coalescer.batch").baseUnit("books").register(registry);
+        Gauge.builder("library.book.coalescer.queue", queue, BlockingQueue::size).register(registry);
+    }
+
+    /**
+     * However the loop ends, even by an {@link Error}, saves still waiting are failed rather than left to their
+     * callers' timeouts.
+     */
+    private void run() {
+        List<PendingSave> batch = new ArrayList<>(maxBatch);
+        try {
+            while(running || !queue.isEmpty()) {
+                try {
+                    collect(batch);
+                } catch(InterruptedException ex) {
+                    // Shutdown: write what was already collected, then drain the rest
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+                if(!batch.isEmpty()) {
+                    flush(batch);
+                    batch.clear();
+                }
+            }
+        } finally {
+            running = false;
+            queue.drainTo(batch);
+            IllegalStateException stopped = new IllegalStateException("Book write coalescer stopped before the book was saved");
+            batch.forEach(pending -> pending.result.completeExceptionally(stopped));
+        }
+    }
+
+    private void collect(List<PendingSave> batch) throws InterruptedException {
+        batch.add(queue.take());
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while(batch.size() < maxBatch) {
+            if(queue.drainTo(batch, maxBatch - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            PendingSave next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if(next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<PendingSave> batch) {
+        List<Book> books = new ArrayList<>(batch.size());
+        batch.forEach(pending -> books.add(pending.book));
+        if(batchSizes != null) {
+            batchSizes.record(batch.size());
+        }
+        try {
+            List<BookSaveResult> results = service.saveAll(books);
+            for(int i = 0; i < batch.size(); i++) {
+                BookSaveResult result = results.get(i);
+                if(result.isSaved()) {
+                    batch.get(i).result.complete(result.getBook());
+                } else {
+                    batch.get(i).result.completeExceptionally(new BusinessException(result.getError()));
+                }
+            }
+        } catch(RuntimeException ex) {
+            batch.forEach(pending -> pending.result.completeExceptionally(ex));
+        }
+    }
+
+    private static class PendingSave {
+
+        private final Book book;
+
+        private final CompletableFuture<Book> result = new CompletableFuture<>();
+
+        private PendingSave(Book book) {
+            this.book = book;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.sparsis.libraryapi.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counting Bloom filter over the known ISBNs. A negative answer is definitive, so most new ISBNs can be
+ * saved without an existence query; a positive answer may be false and must be confirmed against the
+ * database. Each slot is a saturating 4-bit counter, which is what allows ISBNs to be removed on delete.
+ */
+@Component
+public class IsbnFilter {
+
+    private static final int COUNTERS_PER_WORD = 16;
+    private static final long COUNTER_MASK = 0xFL;
+
+    private final AtomicLongArray counters;
+    private final int size;
+    private final int hashFunctions;
+
+    public IsbnFilter(@Value("${library.isbn-filter.expected-insertions:1000000}") int expectedInsertions,
+                      @Value("${library.isbn-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        if(expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid ISBN filter configuration");
+        }
+        long optimalSize = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.size = (int) Math.min(optimalSize, Integer.MAX_VALUE - COUNTERS_PER_WORD);
+        this.hashFunctions = Math.max(1, (int) Math.round((double) size / expectedInsertions * Math.log(2)));
+        this.counters = new AtomicLongArray((size + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+    }
+
+    public boolean mightContain(String isbn) {
+        if(isbn == null) {
+            return false;
+        }
+        long hash = hash(isbn);
+        for(int i = 0; i < hashFunctions; i++) {
+            int slot = slot(hash, i);
+            if(counter(counters.get(slot / COUNTERS_PER_WORD), slot) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void put(String isbn) {
+        if(isbn != null) {
+            add(isbn, 1);
+        }
+    }
+
+    public void remove(String isbn) {
+        if(isbn != null) {
+            add(isbn, -1);
+        }
+    }
+
+    private void add(String isbn, int delta) {
+        long hash = hash(isbn);
+        for(int i = 0; i < hashFunctions; i++) {
+            int slot = slot(hash, i);
+            int word = slot / COUNTERS_PER_WORD;
+            long current;
+            long updated;
+            do {
+                current = counters.get(word);
+                long value = counter(current, slot);
+                // A saturated counter no longer knows how many ISBNs share it, so it is never decremented
+                if(value == COUNTER_MASK || (delta < 0 && value == 0)) {
+                    break;
+                }
+                int shift = shift(slot);
+                updated = (current & ~(COUNTER_MASK << shift)) | ((value + delta) << shift);
+            } while(!counters.compareAndSet(word, current, updated));
+        }
+    }
+
+    private int slot(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return Math.floorMod(h1 + i * h2, size);
+    }
+
+    private static long counter(long word, int slot) {
+        return (word >>> shift(slot)) & COUNTER_MASK;
+    }
+
+    private static int shift(int slot) {
+        return (slot % COUNTERS_PER_WORD) * 4;
+    }
+
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb93fe53a87ebL;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,157 @@
+package com.sparsis.libraryapi.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * In-memory map from ISBN-13 number to book id over two primitive arrays, open addressing with linear probing,
+ * so neither keys nor ids are boxed. Readers do not block: they read optimistically and only retry under the
+ * read lock when a write ran at the same time. An id found here is a hint; the book itself is still read by id.
+ */
+@Component
+@ConditionalOnProperty(name = "library.isbn-index.enabled", havingValue = "true")
+public class IsbnIndex {
+
+    public static final long NO_ID = Long.MIN_VALUE;
+
+    private static final long EMPTY = 0;
+
+    private final StampedLock lock = new StampedLock();
+
+    private long[] keys;
+
+    private long[] ids;
+
+    private int size;
+
+    public IsbnIndex(@Value("${library.isbn-index.expected-size:1000000}") int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, expectedSize * 2 - 1)) << 1;
+        this.keys = new long[capacity];
+        this.ids = new long[capacity];
+    }
+
+    /**
+     * Returns the id of the book with the ISBN, or {@link #NO_ID}.
+     */
+    public long get(long isbnNumber) {
+        long stamp = lock.tryOptimisticRead();
+        long id = find(keys, ids, isbnNumber);
+        if(!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                id = find(keys, ids, isbnNumber);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return id;
+    }
+
+    public void put(long isbnNumber, long id) {
+        if(isbnNumber == EMPTY) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int slot = slot(isbnNumber, keys.length);
+            while(keys[slot] != EMPTY && keys[slot] != isbnNumber) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            if(keys[slot] == EMPTY) {
+                size++;
+            }
+            keys[slot] = isbnNumber;
+            ids[slot] = id;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the ISBN only while it still points to the given id, so a late removal cannot drop the entry
+     * of a newer book with the same ISBN.
+     */
+    public void remove(long isbnNumber, long id) {
+        long stamp = lock.writeLock();
+        try {
+            int mask = keys.length - 1;
+            int slot = slot(isbnNumber, keys.length);
+            while(keys[slot] != isbnNumber) {
+                if(keys[slot] == EMPTY) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if(ids[slot] != id) {
+                return;
+            }
+            // Backward shift deletion: move later entries of the probe run into the gap, so no tombstones are needed
+            int gap = slot;
+            for(int next = (gap + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+                int home = slot(keys[next], keys.length);
+                if(((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = keys[next];
+                    ids[gap] = ids[next];
+                    gap = next;
+                }
+            }
+            keys[gap] = EMPTY;
+            size--;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldIds = ids;
+        long[] newKeys = new long[capacity];
+        long[] newIds = new long[capacity];
+        for(int i = 0; i < oldKeys.length; i++) {
+            if(oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i], capacity);
+                while(newKeys[slot] != EMPTY) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                newKeys[slot] = oldKeys[i];
+                newIds[slot] = oldIds[i];
+            }
+        }
+        keys = newKeys;
+        ids = newIds;
+    }
+
+    /**
+     * Probes at most once around the table, so an optimistic read racing a resize still terminates.
+     */
+    private static long find(long[] keys, long[] ids, long isbnNumber) {
+        int length = Math.min(keys.length, ids.length);
+        int slot = slot(isbnNumber, length);
+        for(int probes = 0; probes < length; probes++) {
+            long key = keys[slot];
+            if(key == isbnNumber) {
+                return ids[slot];
+            }
+            if(key == EMPTY) {
+                return NO_ID;
+            }
+            slot = (slot + 1) & (length - 1);
+        }
+        return NO_ID;
+    }
+
+    private static int slot(long key, int capacity) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+    }
+}
@@ -0,0 +1,35 @@
+package com.sparsis.libraryapi;
+
+import com.sparsis.libraryapi.api.dto.BookDTO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("fast-start")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class FastStartTests {
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@DisplayName("Fast start - Books are saved and read with lazy beans and deferred repositories")
+	@Test
+	void saveAndFindTest() {
+		BookDTO book = BookDTO.builder().title("title").author("author").isbn("9780306406157").build();
+
+		ResponseEntity<BookDTO> saved = restTemplate.postForEntity("/api/books", book, BookDTO.class);
+		ResponseEntity<BookDTO> found = restTemplate.getForEntity("/api/books/{id}", BookDTO.class, saved.getBody().getId());
+
+		assertThat(saved.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(found.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(found.getBody().getIsbn()).isEqualTo("9780306406157");
+	}
+
+}
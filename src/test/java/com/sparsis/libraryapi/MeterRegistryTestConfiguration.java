@@ -0,0 +1,19 @@
+package com.sparsis.libraryapi;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Test slices (@WebMvcTest, @DataJpaTest) leave out the metrics auto-configuration, but still create the
+ * instrumented beans of {@link LibraryApplication}; import this to give them a registry.
+ */
+@TestConfiguration
+public class MeterRegistryTestConfiguration {
+
+    @Bean
+    public MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+}
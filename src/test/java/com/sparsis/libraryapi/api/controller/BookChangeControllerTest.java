@@ -0,0 +1,114 @@
+package com.sparsis.libraryapi.api.controller;
+
+import com.sparsis.libraryapi.api.dto.BookChangeDTO;
+import com.sparsis.libraryapi.api.dto.BookChangesDTO;
+import com.sparsis.libraryapi.api.dto.BookDTO;
+import com.sparsis.libraryapi.model.entity.BookChange;
+import com.sparsis.libraryapi.service.BookChangeFeed;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "library.changes.enabled=true")
+public class BookChangeControllerTest {
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    BookChangeFeed feed;
+
+    HttpClient client = HttpClient.newHttpClient();
+
+    @DisplayName("Changes - Saves, updates and deletes are read back in order; rejected saves are not")
+    @Test
+    void changesTest() {
+        long since = lastSeq();
+        BookDTO book = create("9780306406157");
+        restTemplate.put("/api/books/{id}", BookDTO.builder().title("new title").author("author").version(book.getVersion()).build(), book.getId());
+        restTemplate.delete("/api/books/{id}", book.getId());
+        ResponseEntity<BookDTO> duplicate = restTemplate.postForEntity("/api/books", book(create("9780131103627").getIsbn()), BookDTO.class);
+
+        BookChangesDTO changes = restTemplate.getForObject("/api/books/changes?since={since}", BookChangesDTO.class, since);
+
+        assertThat(duplicate.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(changes.getChanges()).extracting(BookChangeDTO::getType)
+                .containsExactly(BookChange.Type.CREATED, BookChange.Type.UPDATED, BookChange.Type.DELETED, BookChange.Type.CREATED);
+        assertThat(changes.getChanges().get(1).getBookId()).isEqualTo(book.getId());
+        assertThat(changes.getChanges().get(1).getBookVersion()).isEqualTo(book.getVersion() + 1);
+        assertThat(changes.getNext()).isEqualTo(changes.getChanges().get(3).getSeq());
+    }
+
+    @DisplayName("Changes - A long poll is answered when the next change commits")
+    @Test
+    void longPollTest() throws Exception {
+        long since = lastSeq();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/books/changes?since=" + since)).build();
+
+        CompletableFuture<HttpResponse<String>> poll = client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        Thread.sleep(200);
+        assertThat(poll).isNotDone();
+        BookDTO book = create("9780201633610");
+
+        HttpResponse<String> response = poll.get(10, TimeUnit.SECONDS);
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).contains("\"bookId\":" + book.getId()).contains("\"type\":\"CREATED\"");
+    }
+
+    @DisplayName("Changes - Server-Sent Events carry the sequence to resume from as event id")
+    @Test
+    void streamTest() throws Exception {
+        long since = lastSeq();
+        BookDTO book = create("9780132350884");
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/books/changes?since=" + since))
+                .header("Accept", "text/event-stream")
+                .build();
+
+        HttpResponse<Stream<String>> response = client.send(request, HttpResponse.BodyHandlers.ofLines());
+        try(Stream<String> lines = response.body()) {
+            String[] event = lines.limit(3).toArray(String[]::new);
+
+            assertThat(event[0]).isEqualTo("id:" + (since + 1));
+            assertThat(event[1]).isEqualTo("event:changes");
+            assertThat(event[2]).startsWith("data:").contains("\"bookId\":" + book.getId());
+        }
+    }
+
+    @DisplayName("Changes - Positions before the first retained change are gone")
+    @Test
+    void expiredTest() {
+        ResponseEntity<String> response = restTemplate.getForEntity("/api/books/changes?since=-5", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.GONE);
+    }
+
+    private long lastSeq() {
+        return feed.lastSeq();
+    }
+
+    private BookDTO create(String isbn) {
+        return restTemplate.postForObject("/api/books", book(isbn), BookDTO.class);
+    }
+
+    private BookDTO book(String isbn) {
+        return BookDTO.builder().title("title").author("author").isbn(isbn).build();
+    }
+}
@@ -1,10 +1,17 @@
 package com.sparsis.libraryapi.api.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.sparsis.libraryapi.MeterRegistryTestConfiguration;
 import com.sparsis.libraryapi.api.dto.BookDTO;
+import com.sparsis.libraryapi.api.dto.BookPage;
 import com.sparsis.libraryapi.exception.BusinessException;
 import com.sparsis.libraryapi.model.entity.Book;
+import com.sparsis.libraryapi.service.BookSaveResult;
 import com.sparsis.libraryapi.service.BookService;
+import org.assertj.core.api.Assertions;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,9 +22,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -28,11 +38,15 @@ import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @ActiveProfiles("test")
 @AutoConfigureMockMvc
 @ExtendWith(SpringExtension.class)
 @WebMvcTest
+@Import(MeterRegistryTestConfiguration.class)
 public class BookControllerTest {
 
     static String BOOK_API = "/api/books";
@@ -66,6 +80,28 @@ public class BookControllerTest {
                     .andExpect(MockMvcResultMatchers.jsonPath("isbn").value(bookDTO.getIsbn()));
     }
 
+    @DisplayName("Create book with CBOR")
+    @Test
+    public void createBookCborTest() throws Exception {
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        Book book = Book.builder().id(1L).title("title1").author("author1").isbn("001").build();
+        BDDMockito.given(service.save(Mockito.any(Book.class))).willReturn(book);
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(BOOK_API)
+                .contentType(MediaType.APPLICATION_CBOR)
+                .accept(MediaType.APPLICATION_CBOR)
+                .content(cborMapper.writeValueAsBytes(createNewBookDTO()));
+
+        byte[] response = mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        BookDTO responseDTO = cborMapper.readValue(response, BookDTO.class);
+        Assertions.assertThat(responseDTO.getId()).isEqualTo(1L);
+        Assertions.assertThat(responseDTO.getTitle()).isEqualTo("title1");
+    }
+
     @DisplayName("Create book with empty attributes")
     @Test
     public void createBookWithEmptyAttr() throws Exception {
@@ -98,6 +134,126 @@ public class BookControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("errors[0]").value("Duplicated ISBN"));
     }
 
+    @DisplayName("Create books in batch from JSON array")
+    @Test
+    void createBooksInBatchTest() throws Exception {
+        Book saved = Book.builder().id(1L).title("title1").author("author1").isbn("001").build();
+        Book duplicated = Book.builder().title("title2").author("author2").isbn("002").build();
+        BDDMockito.given(service.saveAll(Mockito.anyList()))
+                .willReturn(Arrays.asList(BookSaveResult.saved(saved), BookSaveResult.rejected(duplicated, "Duplicated ISBN")));
+
+        String json = "[{\"title\":\"title1\",\"author\":\"author1\",\"isbn\":\"001\"},"
+                + "{\"title\":\"\",\"author\":\"author3\",\"isbn\":\"003\"},"
+                + "{\"title\":\"title2\",\"author\":\"author2\",\"isbn\":\"002\"}]";
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(BOOK_API.concat("/batch"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$", Matchers.hasSize(3)))
+                .andExpect(MockMvcResultMatchers.jsonPath("[0].id").value(1L))
+                .andExpect(MockMvcResultMatchers.jsonPath("[1].index").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("[1].errors[0]").value("title must not be empty"))
+                .andExpect(MockMvcResultMatchers.jsonPath("[2].index").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("[2].errors[0]").value("Duplicated ISBN"));
+    }
+
+    @DisplayName("Create book ignores a version in the body")
+    @Test
+    void createBookIgnoresVersionTest() throws Exception {
+        BookDTO bookDTO = createNewBookDTO();
+        bookDTO.setVersion(5L);
+        BDDMockito.given(service.save(Mockito.any(Book.class)))
+                .willReturn(Book.builder().id(1L).title("title1").author("author1").isbn("001").version(0L).build());
+        // The chunk list is reused after the call, so it is checked while the call is made
+        BDDMockito.given(service.saveAll(Mockito.argThat(books -> books.get(0).getVersion() == null)))
+                .willReturn(Arrays.asList(BookSaveResult.saved(Book.builder().id(2L).title("title1").author("author1").isbn("001").version(0L).build())));
+        String json = new ObjectMapper().writeValueAsString(bookDTO);
+
+        mvc.perform(MockMvcRequestBuilders.post(BOOK_API).contentType(MediaType.APPLICATION_JSON).content(json))
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andExpect(MockMvcResultMatchers.jsonPath("version").value(0L));
+        mvc.perform(MockMvcRequestBuilders.post(BOOK_API.concat("/batch")).contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON).content("[" + json + "]"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("[0].id").value(2L));
+
+        Mockito.verify(service).save(Mockito.argThat(book -> book.getVersion() == null));
+    }
+
+    @DisplayName("Create books in batch from NDJSON")
+    @Test
+    void createBooksInBatchFromNdjsonTest() throws Exception {
+        Book first = Book.builder().id(1L).title("title1").author("author1").isbn("001").build();
+        Book second = Book.builder().id(2L).title("title2").author("author2").isbn("002").build();
+        BDDMockito.given(service.saveAll(Mockito.anyList()))
+                .willReturn(Arrays.asList(BookSaveResult.saved(first), BookSaveResult.saved(second)));
+
+        String ndjson = "{\"title\":\"title1\",\"author\":\"author1\",\"isbn\":\"001\"}\n"
+                + "{\"title\":\"title2\",\"author\":\"author2\",\"isbn\":\"002\"}\n";
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(BOOK_API.concat("/batch"))
+                .contentType("application/x-ndjson")
+                .accept(MediaType.APPLICATION_JSON)
+                .content(ndjson);
+
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$", Matchers.hasSize(2)))
+                .andExpect(MockMvcResultMatchers.jsonPath("[0].id").value(1L))
+                .andExpect(MockMvcResultMatchers.jsonPath("[1].id").value(2L))
+                .andExpect(MockMvcResultMatchers.jsonPath("[1].errors").doesNotExist());
+    }
+
+    @DisplayName("Create books in batch answers NDJSON in input order, past a malformed line")
+    @Test
+    void createBooksInBatchAsNdjsonTest() throws Exception {
+        Book first = Book.builder().id(1L).title("title1").author("author1").isbn("001").build();
+        Book third = Book.builder().id(3L).title("title3").author("author3").isbn("003").build();
+        BDDMockito.given(service.saveAll(Mockito.anyList()))
+                .willReturn(Arrays.asList(BookSaveResult.saved(first), BookSaveResult.saved(third)));
+
+        String ndjson = "{\"title\":\"title1\",\"author\":\"author1\",\"isbn\":\"001\"}\n"
+                + "{\"title\":\"title2\",\n"
+                + "{\"title\":\"title3\",\"author\":\"author3\",\"isbn\":\"003\"}\n";
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(BOOK_API.concat("/batch"))
+                .contentType("application/x-ndjson")
+                .content(ndjson);
+
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("application/x-ndjson"))
+                .andExpect(MockMvcResultMatchers.content().string("{\"index\":0,\"id\":1}\n"
+                        + "{\"index\":1,\"errors\":[\"Malformed JSON record\"]}\n"
+                        + "{\"index\":2,\"id\":3}"));
+    }
+
+    @DisplayName("Create books in batch stops at a malformed JSON array and says from where")
+    @Test
+    void createBooksInBatchFromMalformedArrayTest() throws Exception {
+        Book first = Book.builder().id(1L).title("title1").author("author1").isbn("001").build();
+        BDDMockito.given(service.saveAll(Mockito.anyList())).willReturn(Arrays.asList(BookSaveResult.saved(first)));
+
+        String json = "[{\"title\":\"title1\",\"author\":\"author1\",\"isbn\":\"001\"},"
+                + "{\"title\" \"title2\"},"
+                + "{\"title\":\"title3\",\"author\":\"author3\",\"isbn\":\"003\"}]";
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(BOOK_API.concat("/batch"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$", Matchers.hasSize(2)))
+                .andExpect(MockMvcResultMatchers.jsonPath("[0].id").value(1L))
+                .andExpect(MockMvcResultMatchers.jsonPath("[1].index").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("[1].errors[0]").value("Malformed JSON record; this and all later records were not processed"));
+    }
+
     @DisplayName("Get Book detail with exists book")
     @Test
     void getBookDetailWithExistsBook() throws Exception {
@@ -118,6 +274,50 @@ public class BookControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("isbn").value(createNewBookDTO().getIsbn()));
     }
 
+    @DisplayName("Get Book detail not modified")
+    @Test
+    void getBookDetailNotModified() throws Exception {
+        Long id = 1L;
+        Book book = Book.builder().id(id).title("title1").author("author1").isbn("001").version(2L).build();
+        BDDMockito.given(service.findById(id)).willReturn(Optional.of(book));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/" + id)).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"2\""));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/" + id)).accept(MediaType.APPLICATION_JSON).header("If-None-Match", "\"2\""))
+                .andExpect(MockMvcResultMatchers.status().isNotModified())
+                .andExpect(MockMvcResultMatchers.content().string(""));
+    }
+
+    @DisplayName("Get Book detail tagged per format")
+    @Test
+    void getBookDetailTaggedPerFormat() throws Exception {
+        Long id = 1L;
+        Book book = Book.builder().id(id).title("title1").author("author1").isbn("001").version(2L).build();
+        BDDMockito.given(service.findById(id)).willReturn(Optional.of(book));
+        BDDMockito.given(service.findByIsbn("001")).willReturn(Optional.of(book));
+        BDDMockito.given(service.findAllById(Arrays.asList(1L))).willReturn(Arrays.asList(book));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/" + id)).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"2-cbor\""))
+                .andExpect(MockMvcResultMatchers.header().string("Vary", Matchers.containsString("Accept")));
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/" + id)).accept(MediaType.APPLICATION_CBOR).header("If-None-Match", "\"2\""))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/isbn/001")).accept("application/x-jackson-smile"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"2-x-jackson-smile\""))
+                .andExpect(MockMvcResultMatchers.header().string("Vary", Matchers.containsString("Accept")));
+
+        String json = mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?ids=1")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.header().string("Vary", Matchers.containsString("Accept")))
+                .andReturn().getResponse().getHeader("ETag");
+        String cbor = mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?ids=1")).accept(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getHeader("ETag");
+        Assertions.assertThat(cbor).isNotEqualTo(json);
+    }
+
     @DisplayName("Get Book detail not exists book")
     @Test
     void getBookDetailNotExistsBook() throws Exception {
@@ -131,12 +331,126 @@ public class BookControllerTest {
         mvc.perform(request).andExpect(MockMvcResultMatchers.status().isNotFound());
     }
 
+    @DisplayName("Get Book detail by ISBN")
+    @Test
+    void getBookDetailByIsbn() throws Exception {
+        Book book = Book.builder().id(1L).title("title1").author("author1").isbn("978-0-306-40615-7").version(0L).build();
+        BDDMockito.given(service.findByIsbn("0-306-40615-2")).willReturn(Optional.of(book));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/isbn/0-306-40615-2")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"0\""))
+                .andExpect(MockMvcResultMatchers.jsonPath("id").value(1L))
+                .andExpect(MockMvcResultMatchers.jsonPath("isbn").value("978-0-306-40615-7"));
+    }
+
+    @DisplayName("Get Book detail by invalid or unknown ISBN")
+    @Test
+    void getBookDetailByIsbnNotFound() throws Exception {
+        BDDMockito.given(service.findByIsbn("9780306406157")).willReturn(Optional.empty());
+        BDDMockito.given(service.findByIsbn("001")).willThrow(new BusinessException("Invalid ISBN"));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/isbn/9780306406157")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/isbn/001")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("errors[0]").value("Invalid ISBN"));
+    }
+
+    @DisplayName("Get Books by ids")
+    @Test
+    void getBooksByIds() throws Exception {
+        Book book = Book.builder().id(1L).title("title1").author("author1").isbn("001").version(0L).build();
+        BDDMockito.given(service.findAllById(Arrays.asList(1L, 2L))).willReturn(Arrays.asList(book));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?ids=1,2")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().exists("ETag"))
+                .andExpect(MockMvcResultMatchers.jsonPath("books", Matchers.hasSize(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("books[0].id").value(1L))
+                .andExpect(MockMvcResultMatchers.jsonPath("missing", Matchers.contains(2)));
+
+        mvc.perform(MockMvcRequestBuilders.post(BOOK_API.concat("/lookup")).contentType(MediaType.APPLICATION_JSON).content("[1, 2]"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("books[0].id").value(1L))
+                .andExpect(MockMvcResultMatchers.jsonPath("missing", Matchers.contains(2)));
+    }
+
+    @DisplayName("Get Books by too many ids")
+    @Test
+    void getBooksByTooManyIds() throws Exception {
+        String ids = IntStream.rangeClosed(1, 201).mapToObj(Integer::toString).collect(Collectors.joining(","));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?ids=" + ids)).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("errors[0]").value("At most 200 ids can be looked up at once"));
+        Mockito.verifyNoInteractions(service);
+    }
+
+    @DisplayName("Search books")
+    @Test
+    void searchBooksTest() throws Exception {
+        Book book = Book.builder().id(1L).title("title1").author("author1").isbn("001").build();
+        BDDMockito.given(service.search("title", 20)).willReturn(Arrays.asList(book));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API.concat("/search?q=title"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$", Matchers.hasSize(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("[0].id").value(1L))
+                .andExpect(MockMvcResultMatchers.jsonPath("[0].title").value("title1"));
+    }
+
+    @DisplayName("Export books as NDJSON")
+    @Test
+    void exportBooksAsNdjsonTest() throws Exception {
+        mockExport(Book.builder().id(1L).title("title1").author("author1").isbn("001").version(0L).build(),
+                Book.builder().id(2L).title("title2").author("author2").isbn("002").version(3L).build());
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API.concat("/export"))
+                .accept("application/x-ndjson");
+
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("application/x-ndjson"))
+                .andExpect(MockMvcResultMatchers.content().string(
+                        "{\"id\":1,\"title\":\"title1\",\"author\":\"author1\",\"isbn\":\"001\",\"version\":0}\n"
+                        + "{\"id\":2,\"title\":\"title2\",\"author\":\"author2\",\"isbn\":\"002\",\"version\":3}"));
+    }
+
+    @DisplayName("Export books without Accept header as NDJSON")
+    @Test
+    void exportBooksWithoutAcceptTest() throws Exception {
+        mockExport(Book.builder().id(1L).title("title1").author("author1").isbn("001").version(0L).build());
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/export")))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("application/x-ndjson"))
+                .andExpect(MockMvcResultMatchers.content().string("{\"id\":1,\"title\":\"title1\",\"author\":\"author1\",\"isbn\":\"001\",\"version\":0}"));
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/export")).accept(MediaType.ALL))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("application/x-ndjson"));
+    }
+
+    @DisplayName("Export books as CSV")
+    @Test
+    void exportBooksAsCsvTest() throws Exception {
+        mockExport(Book.builder().id(1L).title("title, \"quoted\"").author("author1").isbn("001").build());
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API.concat("/export"))
+                .accept("text/csv");
+
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().string("id,title,author,isbn\n1,\"title, \"\"quoted\"\"\",author1,001\n"));
+    }
+
     @DisplayName("Delete Book")
     @Test
     void deleteBook() throws Exception {
-        Long id = 1L;
-        Book book = Book.builder().id(id).build();
-        BDDMockito.given(service.findById(Mockito.anyLong())).willReturn(Optional.of(book));
+        BDDMockito.given(service.delete(Mockito.anyLong())).willReturn(true);
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders.delete(BOOK_API.concat("/" + 1L))
                 .contentType(MediaType.APPLICATION_JSON)
@@ -148,10 +462,7 @@ public class BookControllerTest {
     @DisplayName("Delete book that not exists")
     @Test
     void deleteBookThatNotExists() throws Exception {
-        Long id = 1L;
-        Book book = Book.builder().id(id).build();
-
-        BDDMockito.given(service.findById(Mockito.anyLong())).willReturn(Optional.empty());
+        BDDMockito.given(service.delete(Mockito.anyLong())).willReturn(false);
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders.delete(BOOK_API.concat("/" + 1L))
                 .contentType(MediaType.APPLICATION_JSON)
@@ -167,11 +478,8 @@ public class BookControllerTest {
         BookDTO bookDTO = BookDTO.builder().title("title2").author("author2").build();
         String json = new ObjectMapper().writeValueAsString(bookDTO);
 
-        Book book = Book.builder().id(1L).title("title1").author("author1").isbn("001").build();
-        BDDMockito.given(service.findById(id)).willReturn(Optional.of(book));
-
-        Book updatedBook = Book.builder().id(book.getId()).title(bookDTO.getTitle()).author(bookDTO.getAuthor()).isbn(book.getIsbn()).build();
-        BDDMockito.given(service.update(Mockito.any(Book.class))).willReturn(updatedBook);
+        Book updatedBook = Book.builder().id(id).title(bookDTO.getTitle()).author(bookDTO.getAuthor()).isbn("001").version(1L).build();
+        BDDMockito.given(service.update(Mockito.any(Book.class))).willReturn(Optional.of(updatedBook));
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put(BOOK_API.concat("/" + id))
                 .contentType(MediaType.APPLICATION_JSON)
@@ -183,7 +491,81 @@ public class BookControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("id").isNotEmpty())
                 .andExpect(MockMvcResultMatchers.jsonPath("id").value(id))
                 .andExpect(MockMvcResultMatchers.jsonPath("title").value(bookDTO.getTitle()))
-                .andExpect(MockMvcResultMatchers.jsonPath("author").value(bookDTO.getAuthor()));
+                .andExpect(MockMvcResultMatchers.jsonPath("author").value(bookDTO.getAuthor()))
+                .andExpect(MockMvcResultMatchers.jsonPath("isbn").value("001"))
+                .andExpect(MockMvcResultMatchers.jsonPath("version").value(1));
+    }
+
+    @DisplayName("Update book with stale version")
+    @Test
+    void updateBookWithStaleVersion() throws Exception {
+        BookDTO bookDTO = BookDTO.builder().title("title2").author("author2").version(0L).build();
+        String json = new ObjectMapper().writeValueAsString(bookDTO);
+
+        BDDMockito.given(service.update(Mockito.any(Book.class))).willThrow(new OptimisticLockingFailureException("Book was modified by another request"));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put(BOOK_API.concat("/" + 1L))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isConflict())
+                .andExpect(MockMvcResultMatchers.jsonPath("errors[0]").value("Book was modified by another request"));
+    }
+
+    @DisplayName("Update book with If-Match")
+    @Test
+    void updateBookWithIfMatch() throws Exception {
+        BookDTO bookDTO = BookDTO.builder().title("title2").author("author2").build();
+        String json = new ObjectMapper().writeValueAsString(bookDTO);
+        Book updatedBook = Book.builder().id(1L).title("title2").author("author2").isbn("001").version(4L).build();
+        BDDMockito.given(service.update(Mockito.argThat(book -> Long.valueOf(3L).equals(book.getVersion())))).willReturn(Optional.of(updatedBook));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put(BOOK_API.concat("/" + 1L))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .header("If-Match", "\"3\"")
+                .content(json);
+
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"4\""));
+    }
+
+    @DisplayName("Update book with If-Match of another format")
+    @Test
+    void updateBookWithIfMatchOfAnotherFormat() throws Exception {
+        BookDTO bookDTO = BookDTO.builder().title("title2").author("author2").build();
+        String json = new ObjectMapper().writeValueAsString(bookDTO);
+        Book updatedBook = Book.builder().id(1L).title("title2").author("author2").isbn("001").version(4L).build();
+        BDDMockito.given(service.update(Mockito.argThat(book -> Long.valueOf(3L).equals(book.getVersion())))).willReturn(Optional.of(updatedBook));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put(BOOK_API.concat("/" + 1L))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_CBOR)
+                .header("If-Match", "\"3-cbor\"")
+                .content(json);
+
+        mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"4-cbor\""));
+    }
+
+    @DisplayName("Update book with stale If-Match")
+    @Test
+    void updateBookWithStaleIfMatch() throws Exception {
+        BookDTO bookDTO = BookDTO.builder().title("title2").author("author2").build();
+        String json = new ObjectMapper().writeValueAsString(bookDTO);
+        BDDMockito.given(service.update(Mockito.any(Book.class))).willThrow(new OptimisticLockingFailureException("Book was modified by another request"));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put(BOOK_API.concat("/" + 1L))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .header("If-Match", "\"3\"")
+                .content(json);
+
+        mvc.perform(request).andExpect(MockMvcResultMatchers.status().isPreconditionFailed());
     }
 
     @DisplayName("Update book that not exists")
@@ -192,7 +574,7 @@ public class BookControllerTest {
         BookDTO bookDTO = BookDTO.builder().title("title2").author("author2").build();
         String json = new ObjectMapper().writeValueAsString(bookDTO);
 
-        BDDMockito.given(service.findById(Mockito.anyLong())).willReturn(Optional.empty());
+        BDDMockito.given(service.update(Mockito.any(Book.class))).willReturn(Optional.empty());
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put(BOOK_API.concat("/" + 1L))
                 .contentType(MediaType.APPLICATION_JSON)
@@ -215,12 +597,123 @@ public class BookControllerTest {
                 .accept(MediaType.APPLICATION_JSON);
 
         mvc.perform(request).andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("content[0].title").value("title1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("content[0].version").doesNotExist())
+                .andExpect(MockMvcResultMatchers.jsonPath("total").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("next").doesNotExist())
+                .andExpect(MockMvcResultMatchers.jsonPath("pageable").doesNotExist());
+    }
+
+    @DisplayName("Find By - Compact page in Smile")
+    @Test
+    void findBySmileTest() throws Exception {
+        Book book = Book.builder().id(1L).title("title1").author("author1").isbn("001").build();
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.any(Pageable.class))).willReturn(new PageImpl<>(Arrays.asList(book), PageRequest.of(0, 100), 1));
+
+        byte[] response = mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?title=title1")).accept("application/x-jackson-smile"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("application/x-jackson-smile"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode page = new ObjectMapper(new SmileFactory()).readTree(response);
+        Assertions.assertThat(page.get("content").get(0).get("title").asText()).isEqualTo("title1");
+        Assertions.assertThat(page.get("total").asLong()).isEqualTo(1);
+    }
+
+    @DisplayName("Find By - Spring page shape on request")
+    @Test
+    void findBySpringPageTest() throws Exception {
+        Book book = Book.builder().id(1L).title("title1").author("author1").isbn("001").build();
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.any(Pageable.class))).willReturn(new PageImpl<>(Arrays.asList(book), PageRequest.of(0, 100), 1));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API.concat("?title=title1&page=0&size=100"))
+                .accept(BookPage.SPRING_PAGE_JSON);
+
+        mvc.perform(request).andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(BookPage.SPRING_PAGE_JSON))
+                .andExpect(MockMvcResultMatchers.header().string("Vary", Matchers.containsString("Accept")))
                 .andExpect(MockMvcResultMatchers.jsonPath("content", Matchers.hasSize(1)))
                 .andExpect(MockMvcResultMatchers.jsonPath("totalElements").value(1))
                 .andExpect(MockMvcResultMatchers.jsonPath("pageable.pageSize").value(100))
                 .andExpect(MockMvcResultMatchers.jsonPath("pageable.pageNumber").value(0));
     }
 
+    @DisplayName("Find By - Not Modified")
+    @Test
+    void findByNotModifiedTest() throws Exception {
+        Book book = Book.builder().id(1L).title("title1").author("author1").isbn("001").version(0L).build();
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.any(Pageable.class))).willReturn(new PageImpl<>(Arrays.asList(book), PageRequest.of(0, 100), 1));
+        String url = BOOK_API.concat("?title=title1&page=0&size=100");
+
+        String eTag = mvc.perform(MockMvcRequestBuilders.get(url).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mvc.perform(MockMvcRequestBuilders.get(url).accept(MediaType.APPLICATION_JSON).header("If-None-Match", eTag))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+
+        book.setVersion(1L);
+        mvc.perform(MockMvcRequestBuilders.get(url).accept(MediaType.APPLICATION_JSON).header("If-None-Match", eTag))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+
+    @DisplayName("Find By - Without Count")
+    @Test
+    void findByWithoutCountTest() throws Exception {
+        Book book = Book.builder().id(1L).title("title1").author("author1").isbn("001").build();
+        BDDMockito.given(service.findSlice(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .willReturn(new SliceImpl<>(Arrays.asList(book), PageRequest.of(0, 1), true));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?author=author1&size=1&count=none")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("next").value("http://localhost/api/books?author=author1&count=none&page=1&size=1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("total").doesNotExist());
+        Mockito.verify(service, Mockito.never()).find(Mockito.any(Book.class), Mockito.any(Pageable.class));
+    }
+
+    @DisplayName("Find By - Approximate Count")
+    @Test
+    void findByApproximateCountTest() throws Exception {
+        Book book = Book.builder().id(1L).title("title1").author("author1").isbn("001").build();
+        BDDMockito.given(service.findWithApproximateCount(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<>(Arrays.asList(book), PageRequest.of(0, 1), 42));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?author=author1&size=1&count=approx")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("total").value(42));
+    }
+
+    @DisplayName("Find By After - Keyset Slice")
+    @Test
+    void findByAfterTest() throws Exception {
+        Book book = Book.builder().id(11L).title("title1").author("author1").isbn("001").build();
+        BDDMockito.given(service.findAfter(Mockito.any(Book.class), Mockito.eq(10L), Mockito.eq(5)))
+                .willReturn(new SliceImpl<>(Arrays.asList(book), PageRequest.of(0, 5), true));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API.concat("?author=author1&after=10&size=5"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request).andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("content[0].id").value(11L))
+                .andExpect(MockMvcResultMatchers.jsonPath("next").value("http://localhost/api/books?author=author1&size=5&after=11"))
+                .andExpect(MockMvcResultMatchers.jsonPath("total").doesNotExist());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mockExport(Book... books) {
+        BDDMockito.willAnswer(invocation -> {
+            Consumer<Book> consumer = invocation.getArgument(0);
+            Arrays.stream(books).forEach(consumer);
+            return null;
+        }).given(service).export(Mockito.any(Consumer.class));
+    }
+
     private BookDTO createNewBookDTO() {
         return BookDTO.builder().title("title1").author("author1").isbn("001").build();
     }
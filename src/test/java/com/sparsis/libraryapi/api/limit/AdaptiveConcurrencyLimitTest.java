@@ -0,0 +1,86 @@
+package com.sparsis.libraryapi.api.limit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveConcurrencyLimitTest {
+
+    @DisplayName("Acquire - Fails fast once the limit is reached")
+    @Test
+    void acquireTest() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10);
+
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isFalse();
+
+        limit.release();
+        assertThat(limit.tryAcquire()).isTrue();
+    }
+
+    @DisplayName("Release - Stable latency grows the limit, queueing shrinks it")
+    @Test
+    void adaptTest() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 100);
+
+        saturate(limit, TimeUnit.MILLISECONDS.toNanos(10), 200);
+        int grown = limit.getLimit();
+        assertThat(grown).isGreaterThan(10);
+
+        saturate(limit, TimeUnit.MILLISECONDS.toNanos(100), 50);
+        assertThat(limit.getLimit()).isLessThan(grown / 2);
+    }
+
+    @DisplayName("Release - Samples taken while the limit is not used leave it alone")
+    @Test
+    void underusedTest() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 100);
+
+        for(int i = 0; i < 100; i++) {
+            limit.tryAcquire();
+            limit.release(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(10);
+    }
+
+    @DisplayName("Release - Concurrent releases return every permit and still adapt the limit")
+    @Test
+    void concurrentReleaseTest() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 100);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        for(int thread = 0; thread < 8; thread++) {
+            executor.execute(() -> {
+                for(int i = 0; i < 10000; i++) {
+                    if(limit.tryAcquire()) {
+                        limit.release(TimeUnit.MILLISECONDS.toNanos(10));
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        assertThat(limit.getInFlight()).isZero();
+        assertThat(limit.getLimit()).isBetween(2, 100);
+    }
+
+    /**
+     * Keeps the limit fully used and returns {@code samples} permits with the given latency.
+     */
+    private static void saturate(AdaptiveConcurrencyLimit limit, long rttNanos, int samples) {
+        for(int i = 0; i < samples; i++) {
+            while(limit.tryAcquire()) {
+                // take every permit
+            }
+            limit.release(rttNanos);
+        }
+    }
+}
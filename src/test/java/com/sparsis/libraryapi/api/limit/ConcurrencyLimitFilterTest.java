@@ -0,0 +1,113 @@
+package com.sparsis.libraryapi.api.limit;
+
+import com.sparsis.libraryapi.model.entity.Book;
+import com.sparsis.libraryapi.service.BookService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives 32 concurrent clients against a book lookup that, like a 2-connection pool, serves 2 requests at a time
+ * in 50 ms each. Unlimited, a request would wait for a connection for up to 32 / 2 * 50 ms; with at most 8
+ * requests admitted, the wait stays under 8 / 2 * 50 ms and the rest are turned away before reaching the pool.
+ * Latency is taken inside the lookup, so client threads competing for the CPU do not blur the measurement.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "library.limit.enabled=true",
+        "library.limit.read.initial=4",
+        "library.limit.read.min=2",
+        "library.limit.read.max=8"
+})
+public class ConcurrencyLimitFilterTest {
+
+    private static final int CLIENTS = 32;
+
+    private static final int REQUESTS = 320;
+
+    @LocalServerPort
+    int port;
+
+    @MockBean
+    BookService service;
+
+    @DisplayName("Overload - Excess reads are rejected before the pool and p99 latency stays bounded")
+    @Test
+    void overloadTest() throws Exception {
+        Semaphore connections = new Semaphore(2, true);
+        Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+        BDDMockito.given(service.findById(Mockito.anyLong())).willAnswer(invocation -> {
+            long start = System.nanoTime();
+            connections.acquire();
+            try {
+                Thread.sleep(50);
+            } finally {
+                connections.release();
+            }
+            latencies.add(System.nanoTime() - start);
+            return Optional.of(Book.builder().id(invocation.getArgument(0)).title("title").author("author").isbn("001").version(0L).build());
+        });
+
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/books/1")).build();
+        // Warm up the dispatcher servlet and the JIT, so start-up cost is not mistaken for queueing
+        for(int i = 0; i < 50; i++) {
+            client.send(request, HttpResponse.BodyHandlers.discarding());
+        }
+        latencies.clear();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        List<Future<HttpResponse<String>>> results = new ArrayList<>();
+        try {
+            for(int i = 0; i < REQUESTS; i++) {
+                results.add(clients.submit(() -> client.send(request, HttpResponse.BodyHandlers.ofString())));
+            }
+            List<HttpResponse<String>> responses = new ArrayList<>();
+            for(Future<HttpResponse<String>> result : results) {
+                responses.add(result.get(1, TimeUnit.MINUTES));
+            }
+
+            List<HttpResponse<String>> served = responses.stream().filter(response -> response.statusCode() == 200).collect(Collectors.toList());
+            List<HttpResponse<String>> rejected = responses.stream().filter(response -> response.statusCode() == 503).collect(Collectors.toList());
+
+            assertThat(served.size() + rejected.size()).isEqualTo(REQUESTS);
+            assertThat(served).isNotEmpty();
+            assertThat(rejected).isNotEmpty().allSatisfy(response -> {
+                assertThat(response.headers().firstValue("Retry-After")).hasValue("1");
+                assertThat(response.body()).contains("Too many concurrent requests");
+            });
+            assertThat(latencies).hasSize(served.size());
+            assertThat(p99Millis(latencies)).isLessThan(400);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private static long p99Millis(Collection<Long> samples) {
+        List<Long> latencies = new ArrayList<>(samples);
+        Collections.sort(latencies);
+        return TimeUnit.NANOSECONDS.toMillis(latencies.get((int) Math.ceil(latencies.size() * 0.99) - 1));
+    }
+}
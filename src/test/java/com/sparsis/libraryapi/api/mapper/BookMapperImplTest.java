@@ -0,0 +1,43 @@
+package com.sparsis.libraryapi.api.mapper;
+
+import com.sparsis.libraryapi.api.dto.BookDTO;
+import com.sparsis.libraryapi.model.entity.Book;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookMapperImplTest {
+
+    BookMapper mapper = new BookMapperImpl();
+
+    @DisplayName("To DTO - Copies every field")
+    @Test
+    void toDTOTest() {
+        Book book = Book.builder().id(1L).title("title1").author("author1").isbn("001").build();
+
+        BookDTO bookDTO = mapper.toDTO(book);
+
+        assertThat(bookDTO.getId()).isEqualTo(1L);
+        assertThat(bookDTO.getTitle()).isEqualTo("title1");
+        assertThat(bookDTO.getAuthor()).isEqualTo("author1");
+        assertThat(bookDTO.getIsbn()).isEqualTo("001");
+    }
+
+    @DisplayName("To Entity - Copies every field")
+    @Test
+    void toEntityTest() {
+        BookDTO bookDTO = BookDTO.builder().id(1L).title("title1").author("author1").isbn("001").build();
+
+        Book book = mapper.toEntity(bookDTO);
+
+        assertThat(book).isEqualTo(Book.builder().id(1L).title("title1").author("author1").isbn("001").build());
+    }
+
+    @DisplayName("Null input - Null output")
+    @Test
+    void nullTest() {
+        assertThat(mapper.toDTO(null)).isNull();
+        assertThat(mapper.toEntity(null)).isNull();
+    }
+}
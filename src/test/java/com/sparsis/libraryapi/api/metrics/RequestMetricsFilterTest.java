@@ -0,0 +1,49 @@
+package com.sparsis.libraryapi.api.metrics;
+
+import com.sparsis.libraryapi.exception.BusinessException;
+import com.sparsis.libraryapi.repository.StatementCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequestMetricsFilterTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    RequestMetricsFilter filter = new RequestMetricsFilter(registry);
+
+    @DisplayName("Records JDBC statements per request")
+    @Test
+    void statementCountTest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/books/1");
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/books/{id}");
+            new StatementCounter().inspect("select 1");
+            new StatementCounter().inspect("select 2");
+        });
+
+        assertThat(registry.get("library.jdbc.statements").tag("uri", "/api/books/{id}").summary().totalAmount()).isEqualTo(2);
+    }
+
+    @DisplayName("Counts business and not found outcomes")
+    @Test
+    void errorCountTest() throws Exception {
+        MockHttpServletResponse notFoundResponse = new MockHttpServletResponse();
+        notFoundResponse.setStatus(404);
+        MockHttpServletRequest businessRequest = new MockHttpServletRequest("POST", "/api/books");
+        businessRequest.setAttribute(DispatcherServlet.EXCEPTION_ATTRIBUTE, new BusinessException("Duplicated ISBN"));
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/books/1"), notFoundResponse, (req, res) -> { });
+        filter.doFilter(businessRequest, new MockHttpServletResponse(), (req, res) -> { });
+
+        assertThat(registry.get("library.book.errors").tag("type", "not_found").counter().count()).isEqualTo(1);
+        assertThat(registry.get("library.book.errors").tag("type", "business").counter().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,107 @@
+package com.sparsis.libraryapi.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.sparsis.libraryapi.api.converter.CompactBookPageConverter;
+import com.sparsis.libraryapi.api.dto.BookDTO;
+import com.sparsis.libraryapi.api.dto.BookPage;
+import com.sparsis.libraryapi.model.entity.Book;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares JSON, CBOR and Smile for a single {@link BookDTO} and for a 100-book compact page: encoding and
+ * decoding time, and the payload sizes as the bookBytes and pageBytes secondary results of {@link #payloadSize}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+public class BookCodecBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    private ObjectMapper objectMapper;
+    private CompactBookPageConverter pageConverter;
+    private BookDTO book;
+    private BookPage page;
+    private byte[] encodedBook;
+    private byte[] encodedPage;
+
+    @Setup
+    public void setup() throws IOException {
+        JsonFactory factory = "cbor".equals(format) ? new CBORFactory() : "smile".equals(format) ? new SmileFactory() : new JsonFactory();
+        objectMapper = new ObjectMapper(factory);
+        pageConverter = new CompactBookPageConverter(factory, MediaType.ALL);
+        book = BookDTO.builder().id(1L).title("The Title of a Book").author("Some Author").isbn("9780000000001").version(3L).build();
+        List<Book> books = IntStream.range(0, 100)
+                .mapToObj(i -> Book.builder().id(1000L + i).title("The Title of Book " + i).author("Author " + i % 10).isbn("978000000" + (1000 + i)).version(0L).build())
+                .collect(Collectors.toList());
+        page = new BookPage(books, PageRequest.of(0, 100), true, 100000L, "http://localhost/api/books?page=1&size=100");
+        encodedBook = encodeBook();
+        encodedPage = encodePage();
+    }
+
+    @Benchmark
+    public byte[] encodeBook() throws IOException {
+        return objectMapper.writeValueAsBytes(book);
+    }
+
+    @Benchmark
+    public BookDTO decodeBook() throws IOException {
+        return objectMapper.readValue(encodedBook, BookDTO.class);
+    }
+
+    @Benchmark
+    public byte[] encodePage() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        pageConverter.write(page, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public JsonNode decodePage() throws IOException {
+        return objectMapper.readTree(encodedPage);
+    }
+
+    /**
+     * Reports the payload sizes through JMH, so that they land in the result file next to the timings. Event counters
+     * are summed over iterations, hence the single shot: an {@code -i} option multiplies the sizes by its count.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Measurement(iterations = 1)
+    @Warmup(iterations = 0)
+    public void payloadSize(PayloadSize size) {
+        size.bookBytes = encodedBook.length;
+        size.pageBytes = encodedPage.length;
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class PayloadSize {
+        public long bookBytes;
+        public long pageBytes;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BookCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
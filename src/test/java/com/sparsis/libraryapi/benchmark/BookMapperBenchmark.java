@@ -0,0 +1,68 @@
+package com.sparsis.libraryapi.benchmark;
+
+import com.sparsis.libraryapi.api.dto.BookDTO;
+import com.sparsis.libraryapi.api.mapper.BookMapper;
+import com.sparsis.libraryapi.api.mapper.BookMapperImpl;
+import com.sparsis.libraryapi.model.entity.Book;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the reflective ModelMapper against the hand-written {@link BookMapper} for a single book and
+ * for a 1000-row page.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+public class BookMapperBenchmark {
+
+    private ModelMapper modelMapper;
+    private BookMapper bookMapper;
+    private Book book;
+    private List<Book> page;
+
+    @Setup
+    public void setup() {
+        modelMapper = new ModelMapper();
+        bookMapper = new BookMapperImpl();
+        book = Book.builder().id(1L).title("title").author("author").isbn("9780000000001").build();
+        page = IntStream.range(0, 1000)
+                .mapToObj(i -> Book.builder().id((long) i).title("title" + i).author("author" + i).isbn("isbn" + i).build())
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public BookDTO modelMapperSingle() {
+        return modelMapper.map(book, BookDTO.class);
+    }
+
+    @Benchmark
+    public BookDTO bookMapperSingle() {
+        return bookMapper.toDTO(book);
+    }
+
+    @Benchmark
+    public List<BookDTO> modelMapperPage() {
+        return page.stream().map(entity -> modelMapper.map(entity, BookDTO.class)).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<BookDTO> bookMapperPage() {
+        return page.stream().map(bookMapper::toDTO).collect(Collectors.toList());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BookMapperBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,76 @@
+package com.sparsis.libraryapi.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sparsis.libraryapi.api.converter.CompactBookPageConverter;
+import com.sparsis.libraryapi.api.dto.BookDTO;
+import com.sparsis.libraryapi.api.dto.BookPage;
+import com.sparsis.libraryapi.model.entity.Book;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measures the list response of GET /api/books: the compact envelope streamed from entities, against the
+ * Jackson serialization of the {@code Page<BookDTO>} still served for the Spring page media type.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+public class BookPageSerializationBenchmark {
+
+    @Param({"20", "1000"})
+    private int pageSize;
+
+    private ObjectMapper objectMapper;
+    private Page<BookDTO> page;
+    private CompactBookPageConverter compactConverter;
+    private BookPage bookPage;
+
+    @Setup
+    public void setup() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        List<BookDTO> books = IntStream.range(0, pageSize)
+                .mapToObj(i -> BookDTO.builder().id((long) i).title("title" + i).author("author" + i).isbn("isbn" + i).build())
+                .collect(Collectors.toList());
+        page = new PageImpl<>(books, PageRequest.of(0, pageSize), 100000);
+
+        compactConverter = new CompactBookPageConverter(objectMapper.getFactory(), MediaType.APPLICATION_JSON);
+        List<Book> entities = IntStream.range(0, pageSize)
+                .mapToObj(i -> Book.builder().id((long) i).title("title" + i).author("author" + i).isbn("isbn" + i).build())
+                .collect(Collectors.toList());
+        bookPage = new BookPage(entities, PageRequest.of(0, pageSize), true, 100000L, "http://localhost/api/books?page=1&size=" + pageSize);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] serializeCompactPage() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        compactConverter.write(bookPage, out);
+        return out.toByteArray();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BookPageSerializationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,89 @@
+package com.sparsis.libraryapi.benchmark;
+
+import com.sparsis.libraryapi.LibraryApplication;
+import com.sparsis.libraryapi.model.entity.Book;
+import com.sparsis.libraryapi.service.BookService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmarks {@link BookService} against the embedded H2 database. The book cache size is a parameter so
+ * findById is measured both through the cache and, with a single-entry cache, against the database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 2)
+public class BookServiceBenchmark {
+
+    private static final int DATASET_SIZE = 10000;
+
+    @Param({"1", "10000"})
+    private int cacheSize;
+
+    private ConfigurableApplicationContext context;
+    private BookService service;
+    private List<Long> ids;
+    private final AtomicLong isbnSequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(LibraryApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.main.banner-mode=off",
+                        "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_ON_EXIT=FALSE",
+                        "--logging.level.root=warn",
+                        "--library.cache.books.maximum-size=" + cacheSize);
+        service = context.getBean(BookService.class);
+
+        List<Book> books = IntStream.range(0, DATASET_SIZE).mapToObj(i -> newBook()).collect(Collectors.toList());
+        ids = service.saveAll(books).stream().map(result -> result.getBook().getId()).collect(Collectors.toList());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Book save() {
+        return service.save(newBook());
+    }
+
+    @Benchmark
+    public Optional<Book> findById() {
+        return service.findById(ids.get(ThreadLocalRandom.current().nextInt(ids.size())));
+    }
+
+    @Benchmark
+    public Page<Book> find() {
+        Book filter = Book.builder().author("author" + ThreadLocalRandom.current().nextInt(10)).build();
+        return service.find(filter, PageRequest.of(0, 20));
+    }
+
+    private Book newBook() {
+        long sequence = isbnSequence.incrementAndGet();
+        return Book.builder().title("title" + sequence).author("author" + sequence % 10).isbn("isbn" + sequence).build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BookServiceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
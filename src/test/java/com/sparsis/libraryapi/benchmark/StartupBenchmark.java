@@ -0,0 +1,131 @@
+package com.sparsis.libraryapi.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from launching the application to its first successful {@code GET /api/books/{id}}, for the executable
+ * jar, for the fast-start profile and for the fast-start profile with its class-data-sharing archive. Launches
+ * what the build wrote to target, so package both builds first:
+ * ./mvnw -Pfast-start,benchmark verify -Djmh.include=StartupBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@Fork(1)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 1)
+public class StartupBenchmark {
+
+    private static final Path TARGET = Paths.get("target");
+
+    private static final Path FAST_START = TARGET.resolve("fast-start");
+
+    @Param({"executable-jar", "fast-start", "fast-start-cds"})
+    private String mode;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private Path seed;
+
+    private Process application;
+
+    @Setup
+    public void writeSeed() throws IOException {
+        seed = Files.createTempFile("startup-benchmark", ".sql");
+        Files.writeString(seed, "insert into book (id, title, author, isbn, isbn_number, version) "
+                + "values (1, 'title', 'author', '9780306406157', 9780306406157, 0);\n");
+    }
+
+    @TearDown
+    public void deleteSeed() throws IOException {
+        Files.deleteIfExists(seed);
+    }
+
+    @Benchmark
+    public int firstRequest() throws Exception {
+        int port = freePort();
+        application = start(port);
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/books/1")).build();
+        while(true) {
+            if(!application.isAlive()) {
+                throw new IllegalStateException("The application exited with " + application.exitValue());
+            }
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                if(response.statusCode() == 200) {
+                    return response.statusCode();
+                }
+            } catch(IOException ex) {
+                // Not listening yet
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void stop() throws InterruptedException {
+        application.destroy();
+        application.waitFor();
+    }
+
+    private Process start(int port) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        Path directory;
+        if(mode.equals("executable-jar")) {
+            directory = TARGET;
+            command.addAll(Arrays.asList("-jar", jar(TARGET, "library-api-*.jar")));
+        } else {
+            // The archive is only used with the class path it was dumped with, relative to the fast-start directory
+            directory = FAST_START;
+            if(mode.equals("fast-start-cds")) {
+                command.addAll(Arrays.asList("-Xshare:on", "-XX:SharedArchiveFile=library-api.jsa"));
+            }
+            command.addAll(Arrays.asList("-jar", jar(FAST_START, "*-fast-start.jar"), "--spring.profiles.active=fast-start"));
+        }
+        command.add("--server.port=" + port);
+        command.add("--spring.datasource.data=" + seed.toUri());
+        return new ProcessBuilder(command)
+                .directory(directory.toFile())
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+
+    private static String jar(Path directory, String glob) throws IOException {
+        try(DirectoryStream<Path> jars = Files.newDirectoryStream(directory, glob)) {
+            for(Path jar : jars) {
+                return jar.getFileName().toString();
+            }
+        }
+        throw new IllegalStateException("No " + glob + " in " + directory + "; package with -Pfast-start first");
+    }
+
+    private static int freePort() throws IOException {
+        try(ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(StartupBenchmark.class.getSimpleName()).build()).run();
+    }
+}
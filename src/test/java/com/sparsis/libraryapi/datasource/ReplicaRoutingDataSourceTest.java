@@ -0,0 +1,114 @@
+package com.sparsis.libraryapi.datasource;
+
+import com.sparsis.libraryapi.model.entity.Book;
+import com.sparsis.libraryapi.service.BookCache;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.servlet.http.Cookie;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReplicaRoutingDataSourceTest {
+
+    JdbcTemplate jdbcTemplate;
+
+    TransactionTemplate readOnlyTransaction;
+
+    TransactionTemplate readWriteTransaction;
+
+    @BeforeEach
+    public void setup() {
+        ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(h2("primary"), Collections.singletonList(h2("replica")), Duration.ofMinutes(1));
+        routingDataSource.afterPropertiesSet();
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readWriteTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ReadYourWrites.close();
+    }
+
+    @DisplayName("Read-only transactions go to the replica")
+    @Test
+    void readOnlyTest() {
+        assertThat(databaseOf(readOnlyTransaction)).isEqualTo("REPLICA");
+        assertThat(databaseOf(readWriteTransaction)).isEqualTo("PRIMARY");
+    }
+
+    @DisplayName("Reads after a write stay on the primary")
+    @Test
+    void readYourWritesTest() {
+        databaseOf(readWriteTransaction);
+
+        assertThat(databaseOf(readOnlyTransaction)).isEqualTo("PRIMARY");
+
+        ReadYourWrites.close();
+        assertThat(databaseOf(readOnlyTransaction)).isEqualTo("REPLICA");
+    }
+
+    @DisplayName("Stickiness travels in a cookie to the next request")
+    @Test
+    void readYourWritesCookieTest() throws Exception {
+        ReadYourWritesFilter filter = new ReadYourWritesFilter();
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("PUT", "/api/books/1"), writeResponse,
+                (req, res) -> databaseOf(readWriteTransaction));
+        Cookie cookie = writeResponse.getCookie(ReadYourWritesFilter.COOKIE);
+
+        String[] database = new String[1];
+        MockHttpServletRequest readRequest = new MockHttpServletRequest("GET", "/api/books/1");
+        readRequest.setCookies(cookie);
+        filter.doFilter(readRequest, new MockHttpServletResponse(),
+                (req, res) -> database[0] = databaseOf(readOnlyTransaction));
+
+        assertThat(cookie).isNotNull();
+        assertThat(database[0]).isEqualTo("PRIMARY");
+        assertThat(databaseOf(readOnlyTransaction)).isEqualTo("REPLICA");
+    }
+
+    @DisplayName("Cache loads read from the primary without pinning later reads")
+    @Test
+    void cacheLoadTest() {
+        BookCache bookCache = new BookCache(10, Duration.ofMinutes(1));
+
+        Optional<Book> book = bookCache.get(1L, id -> Optional.of(Book.builder().id(id).title(databaseOf(readOnlyTransaction)).build()));
+
+        assertThat(book.get().getTitle()).isEqualTo("PRIMARY");
+        assertThat(databaseOf(readOnlyTransaction)).isEqualTo("REPLICA");
+    }
+
+    private String databaseOf(TransactionTemplate transaction) {
+        return transaction.execute(status -> database());
+    }
+
+    private String database() {
+        return jdbcTemplate.queryForObject("SELECT DATABASE()", String.class);
+    }
+
+    private static DataSource h2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        return dataSource;
+    }
+}
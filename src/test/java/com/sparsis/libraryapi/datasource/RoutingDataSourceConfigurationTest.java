@@ -0,0 +1,115 @@
+package com.sparsis.libraryapi.datasource;
+
+import com.sparsis.libraryapi.model.entity.Book;
+import com.sparsis.libraryapi.service.BookService;
+import org.assertj.core.api.Assertions;
+import org.h2.jdbcx.JdbcDataSource;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.servlet.http.Cookie;
+import java.util.List;
+
+/**
+ * Runs the router behind the application's JPA transaction manager, which only marks a transaction read-only
+ * after Hibernate has asked for its connection. Each book is written to one database only, so the title a read
+ * returns tells which database answered it.
+ */
+@SpringBootTest(properties = {
+        "library.datasource.routing.enabled=true",
+        "library.datasource.routing.stickiness=1m",
+        "library.datasource.routing.primary.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "library.datasource.routing.replicas[0].url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1"
+})
+@AutoConfigureMockMvc
+public class RoutingDataSourceConfigurationTest {
+
+    @Autowired
+    BookService service;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MockMvc mvc;
+
+    JdbcTemplate primary = new JdbcTemplate(h2("routing-primary"));
+
+    JdbcTemplate replica = new JdbcTemplate(h2("routing-replica"));
+
+    @BeforeEach
+    public void setup() {
+        replica.execute("DROP ALL OBJECTS");
+        List<String> schema = primary.queryForList("SCRIPT NODATA", String.class);
+        schema.forEach(replica::execute);
+        replica.update("INSERT INTO BOOK (ID, TITLE, AUTHOR, ISBN, VERSION, TITLE_KEY, AUTHOR_KEY) "
+                + "VALUES (1000, 'replica', 'author', 'replica-isbn', 0, 'replica', 'author')");
+        ReadYourWrites.close();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ReadYourWrites.close();
+        primary.update("DELETE FROM BOOK");
+    }
+
+    @DisplayName("Routing - Service reads go to the replica through the JPA transaction manager")
+    @Test
+    void findTest() {
+        Assertions.assertThat(transactionManager).isInstanceOf(JpaTransactionManager.class);
+
+        Assertions.assertThat(titles()).containsExactly("replica");
+    }
+
+    @DisplayName("Routing - A read after a save in the same request goes to the primary")
+    @Test
+    void readYourWritesTest() {
+        service.save(Book.builder().title("primary").author("author").isbn("primary-isbn").build());
+
+        Assertions.assertThat(titles()).containsExactly("primary");
+
+        ReadYourWrites.close();
+        Assertions.assertThat(titles()).containsExactly("replica");
+    }
+
+    @DisplayName("Routing - The cookie set by a write keeps the client's next read on the primary")
+    @Test
+    void readYourWritesCookieTest() throws Exception {
+        Cookie cookie = mvc.perform(MockMvcRequestBuilders.post("/api/books")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"primary\",\"author\":\"author\",\"isbn\":\"primary-isbn\"}"))
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andReturn().getResponse().getCookie(ReadYourWritesFilter.COOKIE);
+
+        Assertions.assertThat(cookie).isNotNull();
+        mvc.perform(MockMvcRequestBuilders.get("/api/books").cookie(cookie))
+                .andExpect(MockMvcResultMatchers.jsonPath("content[*].title", Matchers.contains("primary")));
+        mvc.perform(MockMvcRequestBuilders.get("/api/books"))
+                .andExpect(MockMvcResultMatchers.jsonPath("content[*].title", Matchers.contains("replica")));
+    }
+
+    private List<String> titles() {
+        return service.find(Book.builder().build(), PageRequest.of(0, 10)).map(Book::getTitle).getContent();
+    }
+
+    private static JdbcDataSource h2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        return dataSource;
+    }
+}
@@ -0,0 +1,129 @@
+package com.sparsis.libraryapi.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sparsis.libraryapi.api.dto.BookDTO;
+import com.sparsis.libraryapi.model.entity.Book;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The requests of the load test workloads against {@code BookController}. Get and update pick among the seeded
+ * books, while delete works down from the last seeded ones, which are kept out of the others' picks, so no
+ * workload runs into a missing book. Each workload draws from its own seeded random, so runs send the same
+ * requests.
+ */
+class BookRequests {
+
+    enum Workload {
+        CREATE, GET, LIST, UPDATE, DELETE
+    }
+
+    private final HttpClient client;
+
+    /**
+     * The API root, ending with a slash.
+     */
+    private final URI api;
+
+    private final ObjectMapper objectMapper;
+
+    private final LoadTestProperties properties;
+
+    private final long[] ids;
+
+    /**
+     * Seeded books that get and update pick from; the ones after are left to delete.
+     */
+    private final int shared;
+
+    private final AtomicInteger nextDelete;
+
+    private final AtomicLong nextCreate;
+
+    BookRequests(HttpClient client, URI api, ObjectMapper objectMapper, LoadTestProperties properties, long[] ids, int deletes) {
+        if(deletes >= ids.length) {
+            throw new IllegalArgumentException(ids.length + " books are too few for " + deletes + " deletes");
+        }
+        this.client = client;
+        this.api = api;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.ids = ids;
+        this.shared = ids.length - deletes;
+        this.nextDelete = new AtomicInteger(ids.length);
+        this.nextCreate = new AtomicLong(ids.length);
+    }
+
+    /**
+     * The n-th book of the data set; the seeded books come first, then the ones the create workload adds.
+     */
+    static Book book(long n, int authors) {
+        return Book.builder().title("title" + n).author(author(n % authors)).isbn("isbn" + n).build();
+    }
+
+    Supplier<CompletableFuture<Boolean>> of(Workload workload) {
+        SplittableRandom random = new SplittableRandom(properties.getSeed() + workload.ordinal());
+        switch(workload) {
+            case CREATE:
+                return () -> {
+                    Book book = book(nextCreate.getAndIncrement(), properties.getAuthors());
+                    BookDTO body = BookDTO.builder().title(book.getTitle()).author(book.getAuthor()).isbn(book.getIsbn()).build();
+                    return send(request(api.resolve("books")).header("Content-Type", "application/json").POST(json(body)));
+                };
+            case GET:
+                return () -> send(request(api.resolve("books/" + sharedId(random))).GET());
+            case LIST:
+                return () -> send(request(api.resolve("books?author=" + author(random.nextInt(properties.getAuthors())) + "&size=" + properties.getPageSize())).GET());
+            case UPDATE:
+                return () -> send(request(api.resolve("books/" + sharedId(random)))
+                        .header("Content-Type", "application/json")
+                        .PUT(json(BookDTO.builder().title("title" + random.nextInt()).author(author(random.nextInt(properties.getAuthors()))).build())));
+            case DELETE:
+                return () -> {
+                    int index = nextDelete.decrementAndGet();
+                    if(index < shared) {
+                        return CompletableFuture.failedFuture(new IllegalStateException("No books left to delete"));
+                    }
+                    return send(request(api.resolve("books/" + ids[index])).DELETE());
+                };
+            default:
+                throw new IllegalArgumentException("Unknown workload " + workload);
+        }
+    }
+
+    private static String author(long n) {
+        return "author" + n;
+    }
+
+    private long sharedId(SplittableRandom random) {
+        return ids[random.nextInt(shared)];
+    }
+
+    private HttpRequest.Builder request(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(properties.getTimeout())
+                .header("Accept", "application/json");
+    }
+
+    private HttpRequest.BodyPublisher json(BookDTO book) {
+        try {
+            return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(book));
+        } catch(JsonProcessingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private CompletableFuture<Boolean> send(HttpRequest.Builder request) {
+        return client.sendAsync(request.build(), HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> response.statusCode() / 100 == 2);
+    }
+}
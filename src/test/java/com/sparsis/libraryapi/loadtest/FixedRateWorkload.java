@@ -0,0 +1,127 @@
+package com.sparsis.libraryapi.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Sends the requests of one workload at a fixed arrival rate, however long the previous ones take: an open model,
+ * where a slow server does not slow its clients down. Response times are measured from when a request was due,
+ * not from when it was sent, so when the sender falls behind the wait is still charged to the server instead of
+ * silently dropping out of the numbers (coordinated omission). The time from sending is kept as service time.
+ * <p>
+ * Latencies are recorded in microseconds.
+ */
+public class FixedRateWorkload {
+
+    private final String name;
+
+    private final double rate;
+
+    private final long intervalNanos;
+
+    private final Supplier<CompletableFuture<Boolean>> request;
+
+    private final Histogram responseTimes = new ConcurrentHistogram(3);
+
+    private final Histogram serviceTimes = new ConcurrentHistogram(3);
+
+    private final LongAdder errors = new LongAdder();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * @param rate    requests per second
+     * @param request sends one request, completing with whether it succeeded
+     */
+    public FixedRateWorkload(String name, double rate, Supplier<CompletableFuture<Boolean>> request) {
+        if(rate <= 0) {
+            throw new IllegalArgumentException("Rate of " + name + " must be positive");
+        }
+        this.name = name;
+        this.rate = rate;
+        this.intervalNanos = Math.round(TimeUnit.SECONDS.toNanos(1) / rate);
+        this.request = request;
+    }
+
+    /**
+     * Sends the requests due from {@code start} until {@code end} on the calling thread, all times being
+     * {@link System#nanoTime()}. Only requests due from {@code measureFrom} on are recorded, so the ones before
+     * warm the server up.
+     */
+    public void run(long start, long measureFrom, long end) {
+        for(long n = 0; ; n++) {
+            long due = start + n * intervalNanos;
+            if(due - end >= 0) {
+                return;
+            }
+            for(long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            send(due, due - measureFrom >= 0);
+        }
+    }
+
+    /**
+     * Waits for the requests still in flight; false when some are left after the timeout.
+     */
+    public boolean awaitCompletion(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while(inFlight.get() > 0) {
+            if(System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public Histogram getResponseTimes() {
+        return responseTimes.copy();
+    }
+
+    public Histogram getServiceTimes() {
+        return serviceTimes.copy();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    private void send(long due, boolean measured) {
+        long sent = System.nanoTime();
+        CompletableFuture<Boolean> response;
+        try {
+            response = request.get();
+        } catch(RuntimeException ex) {
+            response = CompletableFuture.failedFuture(ex);
+        }
+        inFlight.incrementAndGet();
+        response.whenComplete((success, failure) -> {
+            long completed = System.nanoTime();
+            if(measured) {
+                responseTimes.recordValue(TimeUnit.NANOSECONDS.toMicros(completed - due));
+                serviceTimes.recordValue(TimeUnit.NANOSECONDS.toMicros(completed - sent));
+                if(failure != null || !Boolean.TRUE.equals(success)) {
+                    errors.increment();
+                }
+            }
+            inFlight.decrementAndGet();
+        });
+    }
+}
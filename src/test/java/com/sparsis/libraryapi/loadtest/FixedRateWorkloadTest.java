@@ -0,0 +1,64 @@
+package com.sparsis.libraryapi.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FixedRateWorkloadTest {
+
+    @DisplayName("Run - A stalled sender still sends every request, and charges the stall to the ones that were due")
+    @Test
+    void stallTest() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        FixedRateWorkload workload = new FixedRateWorkload("stall", 100, () -> {
+            if(sent.incrementAndGet() == 10) {
+                sleep(200);
+            }
+            return CompletableFuture.completedFuture(true);
+        });
+
+        long start = System.nanoTime();
+        workload.run(start, start, start + TimeUnit.MILLISECONDS.toNanos(500));
+
+        assertThat(workload.awaitCompletion(Duration.ofSeconds(1))).isTrue();
+        Histogram responseTimes = workload.getResponseTimes();
+        Histogram serviceTimes = workload.getServiceTimes();
+        assertThat(sent.get()).isEqualTo(50);
+        assertThat(responseTimes.getTotalCount()).isEqualTo(50);
+        assertThat(responseTimes.getMaxValue()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toMicros(190));
+        assertThat(responseTimes.getCountBetweenValues(TimeUnit.MILLISECONDS.toMicros(50), Long.MAX_VALUE)).isGreaterThanOrEqualTo(10);
+        assertThat(serviceTimes.getValueAtPercentile(90)).isLessThan(TimeUnit.MILLISECONDS.toMicros(50));
+        assertThat(workload.getErrors()).isZero();
+    }
+
+    @DisplayName("Run - Requests due during the warmup are sent but not recorded; failures count as errors")
+    @Test
+    void warmupTest() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        FixedRateWorkload workload = new FixedRateWorkload("warmup", 100, () ->
+                CompletableFuture.completedFuture(sent.incrementAndGet() % 2 == 0));
+
+        long start = System.nanoTime();
+        workload.run(start, start + TimeUnit.MILLISECONDS.toNanos(100), start + TimeUnit.MILLISECONDS.toNanos(300));
+
+        assertThat(workload.awaitCompletion(Duration.ofSeconds(1))).isTrue();
+        assertThat(sent.get()).isEqualTo(30);
+        assertThat(workload.getResponseTimes().getTotalCount()).isEqualTo(20);
+        assertThat(workload.getErrors()).isEqualTo(10);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.sparsis.libraryapi.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sparsis.libraryapi.LibraryApplication;
+import com.sparsis.libraryapi.model.entity.Book;
+import com.sparsis.libraryapi.service.BookSaveResult;
+import com.sparsis.libraryapi.service.BookService;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringBootVersion;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Load test of the book API. Boots {@link LibraryApplication} on a random port, seeds {@code load.books} books
+ * into its H2 database, then runs the create, get, list, update and delete workloads side by side, each at its
+ * own fixed arrival rate (see {@link FixedRateWorkload}). For every workload it writes the HdrHistogram
+ * percentile distribution of the response times to {@code <workload>.hgrm} and of the service times to
+ * {@code <workload>-service.hgrm}, next to a {@code summary.txt}.
+ * <p>
+ * Arguments other than {@code load.*} configure the application, so settings can be compared under the same load:
+ * ./mvnw -Pload-test verify -Dload.books=1000000 -Dload.args="--library.second-level-cache.enabled=true"
+ */
+@Slf4j
+public class LoadTest {
+
+    private static final int SEED_CHUNK_SIZE = 1000;
+
+    private final ConfigurableApplicationContext context;
+
+    private final LoadTestProperties properties;
+
+    private final HttpClient client;
+
+    public LoadTest(ConfigurableApplicationContext context, LoadTestProperties properties) {
+        this.context = context;
+        this.properties = properties;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(properties.getTimeout())
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(LibraryApplication.class)
+                .properties("server.port=0",
+                        "spring.main.banner-mode=off",
+                        "spring.main.log-startup-info=false",
+                        "logging.level.root=warn",
+                        "logging.level.com.sparsis.libraryapi.loadtest=info")
+                .run(args);
+        try {
+            new LoadTest(context, Binder.get(context.getEnvironment()).bindOrCreate("load", LoadTestProperties.class)).run();
+        } finally {
+            context.close();
+        }
+    }
+
+    public void run() throws Exception {
+        long[] ids = seed();
+
+        long window = properties.getWarmup().plus(properties.getDuration()).toSeconds();
+        int deletes = (int) Math.ceil(properties.getRates().getOrDefault(BookRequests.Workload.DELETE, 0.0) * window);
+        URI api = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/");
+        BookRequests requests = new BookRequests(client, api, context.getBean(ObjectMapper.class), properties, ids, deletes);
+
+        List<FixedRateWorkload> workloads = Arrays.stream(BookRequests.Workload.values())
+                .filter(workload -> properties.getRates().getOrDefault(workload, 0.0) > 0)
+                .map(workload -> new FixedRateWorkload(workload.name().toLowerCase(), properties.getRates().get(workload), requests.of(workload)))
+                .collect(Collectors.toList());
+
+        log.info("Warming up for {}, then measuring for {}", properties.getWarmup(), properties.getDuration());
+        ExecutorService senders = Executors.newFixedThreadPool(workloads.size());
+        try {
+            long start = System.nanoTime();
+            long measureFrom = start + properties.getWarmup().toNanos();
+            long end = measureFrom + properties.getDuration().toNanos();
+            List<Future<?>> running = new ArrayList<>();
+            for(FixedRateWorkload workload : workloads) {
+                running.add(senders.submit(() -> workload.run(start, measureFrom, end)));
+            }
+            for(Future<?> workload : running) {
+                workload.get();
+            }
+        } finally {
+            senders.shutdownNow();
+        }
+        for(FixedRateWorkload workload : workloads) {
+            if(!workload.awaitCompletion(properties.getTimeout())) {
+                log.warn("Requests of {} still running after {}", workload.getName(), properties.getTimeout());
+            }
+        }
+        report(workloads);
+    }
+
+    /**
+     * Saves the books through the service in chunks, as the batch import does, and returns their ids.
+     */
+    private long[] seed() {
+        BookService service = context.getBean(BookService.class);
+        long[] ids = new long[properties.getBooks()];
+        long started = System.nanoTime();
+        for(int from = 0; from < ids.length; from += SEED_CHUNK_SIZE) {
+            List<Book> chunk = IntStream.range(from, Math.min(from + SEED_CHUNK_SIZE, ids.length))
+                    .mapToObj(n -> BookRequests.book(n, properties.getAuthors()))
+                    .collect(Collectors.toList());
+            List<BookSaveResult> results = service.saveAll(chunk);
+            for(int i = 0; i < results.size(); i++) {
+                if(!results.get(i).isSaved()) {
+                    throw new IllegalStateException("Could not seed book " + (from + i) + ": " + results.get(i).getError());
+                }
+                ids[from + i] = results.get(i).getBook().getId();
+            }
+        }
+        log.info("Seeded {} books in {} s", ids.length, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started));
+        return ids;
+    }
+
+    private void report(List<FixedRateWorkload> workloads) throws IOException {
+        Path directory = Files.createDirectories(Paths.get(properties.getReportDirectory()));
+        StringBuilder summary = new StringBuilder()
+                .append(String.format("Java %s, Spring Boot %s, %d books, warmup %s, duration %s%n",
+                        Runtime.version(), SpringBootVersion.getVersion(), properties.getBooks(), properties.getWarmup(), properties.getDuration()))
+                .append(String.format("%-8s %8s %9s %7s %9s %9s %9s %9s %9s%n",
+                        "workload", "rate/s", "requests", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for(FixedRateWorkload workload : workloads) {
+            Histogram responseTimes = workload.getResponseTimes();
+            write(directory.resolve(workload.getName() + ".hgrm"), responseTimes);
+            write(directory.resolve(workload.getName() + "-service.hgrm"), workload.getServiceTimes());
+            summary.append(String.format("%-8s %8.1f %9d %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    workload.getName(), workload.getRate(), responseTimes.getTotalCount(), workload.getErrors(),
+                    millis(responseTimes, 50), millis(responseTimes, 90), millis(responseTimes, 99), millis(responseTimes, 99.9),
+                    responseTimes.getMaxValue() / 1000.0));
+        }
+        Files.writeString(directory.resolve("summary.txt"), summary);
+        log.info("Response times from when each request was due, written to {}:{}{}", directory.toAbsolutePath(), System.lineSeparator(), summary);
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * Writes the percentile distribution in milliseconds, in the .hgrm format the HdrHistogram plotter reads.
+     */
+    private static void write(Path file, Histogram histogram) throws IOException {
+        try(PrintStream out = new PrintStream(Files.newOutputStream(file), false, StandardCharsets.UTF_8)) {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.sparsis.libraryapi.loadtest;
+
+import lombok.Data;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Settings of a {@link LoadTest} run, bound from the {@code load.*} arguments.
+ */
+@Data
+public class LoadTestProperties {
+
+    /**
+     * Books seeded before the run.
+     */
+    private int books = 100_000;
+
+    /**
+     * Distinct authors of the seeded books, which the list workload filters on.
+     */
+    private int authors = 1_000;
+
+    /**
+     * Requests per second of each workload.
+     */
+    private Map<BookRequests.Workload, Double> rates = new LinkedHashMap<>(Map.of(
+            BookRequests.Workload.CREATE, 5.0,
+            BookRequests.Workload.GET, 50.0,
+            BookRequests.Workload.LIST, 10.0,
+            BookRequests.Workload.UPDATE, 5.0,
+            BookRequests.Workload.DELETE, 5.0));
+
+    /**
+     * Load before the measurement starts, to warm up the JIT, the caches and the connection pools.
+     */
+    private Duration warmup = Duration.ofSeconds(30);
+
+    private Duration duration = Duration.ofSeconds(60);
+
+    private int pageSize = 20;
+
+    /**
+     * Requests without a response by then count as errors.
+     */
+    private Duration timeout = Duration.ofSeconds(10);
+
+    /**
+     * Seed of the ids, authors and titles the workloads pick, so runs send the same requests.
+     */
+    private long seed = 42;
+
+    private String reportDirectory = "target/load-test";
+}
@@ -0,0 +1,37 @@
+package com.sparsis.libraryapi.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IsbnTest {
+
+    @DisplayName("Parse - ISBN-13 with or without hyphens")
+    @Test
+    void parseIsbn13Test() {
+        assertThat(Isbn.parse("978-0-306-40615-7")).hasValue(9780306406157L);
+        assertThat(Isbn.parse("9780306406157")).hasValue(9780306406157L);
+        assertThat(Isbn.parse("979 10 90636 07 1")).hasValue(9791090636071L);
+    }
+
+    @DisplayName("Parse - ISBN-10 is converted to ISBN-13")
+    @Test
+    void parseIsbn10Test() {
+        assertThat(Isbn.parse("0-306-40615-2")).hasValue(9780306406157L);
+        assertThat(Isbn.parse("080442957X")).hasValue(9780804429573L);
+        assertThat(Isbn.parse("080442957x")).hasValue(9780804429573L);
+    }
+
+    @DisplayName("Parse - Invalid ISBNs are rejected")
+    @Test
+    void parseInvalidTest() {
+        assertThat(Isbn.parse(null)).isEmpty();
+        assertThat(Isbn.parse("001")).isEmpty();
+        assertThat(Isbn.parse("978-0-306-40615-8")).isEmpty();
+        assertThat(Isbn.parse("0-306-40615-3")).isEmpty();
+        assertThat(Isbn.parse("1234567890123")).isEmpty();
+        assertThat(Isbn.parse("08044X2957")).isEmpty();
+        assertThat(Isbn.parse("97803064061570")).isEmpty();
+    }
+}
@@ -1,5 +1,6 @@
 package com.sparsis.libraryapi.repository;
 
+import com.sparsis.libraryapi.MeterRegistryTestConfiguration;
 import com.sparsis.libraryapi.model.entity.Book;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
@@ -8,14 +9,29 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @ActiveProfiles
 @ExtendWith(SpringExtension.class)
 @DataJpaTest
+@Import(MeterRegistryTestConfiguration.class)
 public class BookRepositoryTest {
     @Autowired
     TestEntityManager entityManager;
@@ -23,6 +39,9 @@ public class BookRepositoryTest {
     @Autowired
     BookRepository repository;
 
+    @Autowired
+    DataSource dataSource;
+
     @DisplayName("Exists By ISBN - Success")
     @Test
     void existsByIsbnTrueTest() {
@@ -47,13 +66,47 @@ public class BookRepositoryTest {
         Assertions.assertThat(hasISBN).isFalse();
     }
 
+    @DisplayName("Find By ISBN Number - Normalized on persist")
+    @Test
+    void findByIsbnNumberTest() {
+        Book book = entityManager.persist(Book.builder().title("title").author("author").isbn("0-306-40615-2").build());
+
+        Assertions.assertThat(book.getIsbnNumber()).isEqualTo(9780306406157L);
+        Assertions.assertThat(repository.findByIsbnNumber(9780306406157L)).map(Book::getId).hasValue(book.getId());
+        Assertions.assertThat(repository.findByIsbnNumber(9780306406158L)).isEmpty();
+    }
+
+    @DisplayName("Find Existing ISBNs")
+    @Test
+    void findExistingIsbnsTest() {
+        entityManager.persist(createNewBook());
+
+        Set<String> existingIsbns = repository.findExistingIsbns(Arrays.asList("001", "002"));
+
+        Assertions.assertThat(existingIsbns).containsExactly("001");
+    }
+
+    @DisplayName("Stream All - Detached entities")
+    @Test
+    void streamAllTest() {
+        entityManager.persist(createNewBook());
+        entityManager.persist(Book.builder().title("title2").author("author2").isbn("002").build());
+
+        try(Stream<Book> books = repository.streamAll()) {
+            List<Book> streamed = books.collect(Collectors.toList());
+
+            Assertions.assertThat(streamed).extracting(Book::getIsbn).containsExactlyInAnyOrder("001", "002");
+            Assertions.assertThat(streamed).noneMatch(entityManager.getEntityManager()::contains);
+        }
+    }
+
     @DisplayName("Find By ID - Success")
     @Test
     void findByIdTest() {
         Book book = createNewBook();
 
         entityManager.persist(book);
-        Optional<Book> optionalBook = repository.findById(1L);
+        Optional<Book> optionalBook = repository.findById(book.getId());
         Book foundedBook = optionalBook.get();
 
         Assertions.assertThat(optionalBook.isPresent()).isTrue();
@@ -82,7 +135,7 @@ public class BookRepositoryTest {
     void updateBookSuccessTest() {
         Book book = createNewBook();
         entityManager.persist(book);
-        Book savedBook = entityManager.find(Book.class, 1L);
+        Book savedBook = entityManager.find(Book.class, book.getId());
 
         Book updateBook = savedBook;
         updateBook.setTitle("title2");
@@ -100,7 +153,7 @@ public class BookRepositoryTest {
     void deleteBookSuccessTest() {
         Book book = createNewBook();
         entityManager.persist(book);
-        Book savedBook = entityManager.find(Book.class, 1L);
+        Book savedBook = entityManager.find(Book.class, book.getId());
 
         entityManager.remove(savedBook);
         Book foundBook = entityManager.find(Book.class, book.getId());
@@ -108,6 +161,128 @@ public class BookRepositoryTest {
         Assertions.assertThat(foundBook).isNull();
     }
 
+    @DisplayName("Find After - Keyset Slice")
+    @Test
+    void findAfterTest() {
+        Book first = entityManager.persist(createNewBook());
+        Book second = entityManager.persist(Book.builder().title("title2").author("author1").isbn("002").build());
+        Book third = entityManager.persist(Book.builder().title("title3").author("author1").isbn("003").build());
+        entityManager.persist(Book.builder().title("other").author("author2").isbn("004").build());
+
+        Example<Book> example = Example.of(Book.builder().author("author1").build(), ExampleMatcher.matching().withIgnoreNullValues());
+        Slice<Book> firstSlice = repository.findAfter(example, first.getId(), 1);
+        Slice<Book> lastSlice = repository.findAfter(example, second.getId(), 1);
+
+        Assertions.assertThat(firstSlice.getContent()).extracting(Book::getId).containsExactly(second.getId());
+        Assertions.assertThat(firstSlice.hasNext()).isTrue();
+        Assertions.assertThat(lastSlice.getContent()).extracting(Book::getId).containsExactly(third.getId());
+        Assertions.assertThat(lastSlice.hasNext()).isFalse();
+    }
+
+    @DisplayName("Find Slice - Without Count")
+    @Test
+    void findSliceTest() {
+        entityManager.persist(createNewBook());
+        entityManager.persist(Book.builder().title("title2").author("author1").isbn("002").build());
+        entityManager.persist(Book.builder().title("title3").author("author1").isbn("003").build());
+        entityManager.persist(Book.builder().title("other").author("author2").isbn("004").build());
+
+        Example<Book> example = Example.of(Book.builder().author("author1").build(), ExampleMatcher.matching().withIgnoreNullValues());
+        Slice<Book> firstSlice = repository.findSlice(example, PageRequest.of(0, 2, Sort.by("title")));
+        Slice<Book> lastSlice = repository.findSlice(example, PageRequest.of(1, 2, Sort.by("title")));
+
+        Assertions.assertThat(firstSlice.getContent()).extracting(Book::getTitle).containsExactly("title1", "title2");
+        Assertions.assertThat(firstSlice.hasNext()).isTrue();
+        Assertions.assertThat(lastSlice.getContent()).extracting(Book::getTitle).containsExactly("title3");
+        Assertions.assertThat(lastSlice.hasNext()).isFalse();
+    }
+
+    @DisplayName("Find Page - Page and total of the matching books")
+    @Test
+    void findPageTest() {
+        entityManager.persist(createNewBook());
+        entityManager.persist(Book.builder().title("title2").author("author1").isbn("002").build());
+        entityManager.persist(Book.builder().title("title3").author("author1").isbn("003").build());
+        entityManager.persist(Book.builder().title("other").author("author2").isbn("004").build());
+
+        Example<Book> example = Example.of(Book.builder().author("author1").build(), ExampleMatcher.matching().withIgnoreNullValues());
+        Page<Book> firstPage = repository.findPage(example, PageRequest.of(0, 2, Sort.by("title")));
+        Page<Book> lastPage = repository.findPage(example, PageRequest.of(1, 2, Sort.by("title")));
+
+        Assertions.assertThat(firstPage.getContent()).extracting(Book::getTitle).containsExactly("title1", "title2");
+        Assertions.assertThat(firstPage.getTotalElements()).isEqualTo(3);
+        Assertions.assertThat(lastPage.getContent()).extracting(Book::getTitle).containsExactly("title3");
+        Assertions.assertThat(lastPage.getTotalElements()).isEqualTo(3);
+    }
+
+    @DisplayName("Update Title And Author - Single Statement")
+    @Test
+    void updateTitleAndAuthorTest() {
+        Book book = entityManager.persistFlushFind(createNewBook());
+
+        int updatedRows = repository.updateTitleAndAuthor(book.getId(), "title2", "author2");
+        int staleRows = repository.updateTitleAndAuthor(book.getId(), "title3", "author3", book.getVersion());
+        entityManager.clear();
+        Book updatedBook = entityManager.find(Book.class, book.getId());
+
+        Assertions.assertThat(updatedRows).isEqualTo(1);
+        Assertions.assertThat(staleRows).isEqualTo(0);
+        Assertions.assertThat(updatedBook.getTitle()).isEqualTo("title2");
+        Assertions.assertThat(updatedBook.getAuthor()).isEqualTo("author2");
+        Assertions.assertThat(updatedBook.getVersion()).isEqualTo(book.getVersion() + 1);
+        Assertions.assertThat(updatedBook.getTitleKey()).isEqualTo("title2");
+        Assertions.assertThat(updatedBook.getAuthorKey()).isEqualTo("author2");
+    }
+
+    @DisplayName("Update Title And Author - A row without a version gets the first one")
+    @Test
+    void updateTitleAndAuthorWithoutVersionTest() {
+        Book book = entityManager.persistFlushFind(createNewBook());
+        new JdbcTemplate(dataSource).update("UPDATE BOOK SET VERSION = NULL WHERE ID = ?", book.getId());
+
+        int updatedRows = repository.updateTitleAndAuthor(book.getId(), "title2", "author2");
+        entityManager.clear();
+
+        Assertions.assertThat(updatedRows).isEqualTo(1);
+        Assertions.assertThat(entityManager.find(Book.class, book.getId()).getVersion()).isEqualTo(1L);
+    }
+
+    @DisplayName("Search Keys - Title and author filters match the indexed lower-case keys")
+    @Test
+    void searchKeysTest() {
+        Book book = entityManager.persistFlushFind(Book.builder().title("Effective Java").author("Joshua Bloch").isbn("001").build());
+        Example<Book> example = Example.of(Book.builder().titleKey("effective").authorKey("joshua").build(),
+                ExampleMatcher.matching().withIgnoreNullValues()
+                        .withMatcher("titleKey", ExampleMatcher.GenericPropertyMatchers.startsWith())
+                        .withMatcher("authorKey", ExampleMatcher.GenericPropertyMatchers.startsWith()));
+
+        Assertions.assertThat(book.getTitleKey()).isEqualTo("effective java");
+        Assertions.assertThat(book.getAuthorKey()).isEqualTo("joshua bloch");
+        Assertions.assertThat(repository.findAll(example)).extracting(Book::getId).containsExactly(book.getId());
+        Assertions.assertThat(explain("TITLE_KEY", "effective%")).contains("IDX_BOOK_TITLE");
+        Assertions.assertThat(explain("AUTHOR_KEY", "joshua%")).contains("IDX_BOOK_AUTHOR");
+    }
+
+    /**
+     * The plan H2 picks for a prefix filter, in the shape Hibernate generates for a startsWith matcher.
+     */
+    private String explain(String column, String pattern) {
+        return new JdbcTemplate(dataSource).queryForObject("EXPLAIN SELECT * FROM BOOK WHERE " + column + " LIKE ? ESCAPE '\\'",
+                String.class, pattern);
+    }
+
+    @DisplayName("Delete Book By ID - Affected Rows")
+    @Test
+    void deleteBookByIdTest() {
+        Book book = entityManager.persistFlushFind(createNewBook());
+
+        int deletedRows = repository.deleteBookById(book.getId());
+        int missingRows = repository.deleteBookById(book.getId());
+
+        Assertions.assertThat(deletedRows).isEqualTo(1);
+        Assertions.assertThat(missingRows).isEqualTo(0);
+    }
+
     private Book createNewBook() {
         return Book.builder().title("title1").author("author1").isbn("001").build();
     }
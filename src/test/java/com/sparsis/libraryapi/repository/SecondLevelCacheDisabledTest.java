@@ -0,0 +1,53 @@
+package com.sparsis.libraryapi.repository;
+
+import com.sparsis.libraryapi.MeterRegistryTestConfiguration;
+import com.sparsis.libraryapi.model.entity.Book;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs without a test transaction, so a cached book would be served without a statement, and without
+ * {@link SecondLevelCacheConfiguration}, like the other slices, so only application.properties keeps the cache off.
+ */
+@DataJpaTest
+@Import(MeterRegistryTestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class SecondLevelCacheDisabledTest {
+
+    @Autowired
+    BookRepository repository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void cleanUp() {
+        repository.deleteAll();
+    }
+
+    @DisplayName("Disabled - Hibernate does not turn the cache on by itself in a plain slice")
+    @Test
+    void disabledTest() {
+        Book book = repository.save(Book.builder().title("title").author("author").isbn("001").build());
+
+        StatementCounter.reset();
+        repository.findById(book.getId());
+        repository.findById(book.getId());
+
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        assertThat(sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled()).isFalse();
+        assertThat(sessionFactory.getSessionFactoryOptions().isQueryCacheEnabled()).isFalse();
+        assertThat(StatementCounter.count()).isEqualTo(2);
+    }
+}
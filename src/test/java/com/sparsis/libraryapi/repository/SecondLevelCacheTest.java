@@ -0,0 +1,93 @@
+package com.sparsis.libraryapi.repository;
+
+import com.sparsis.libraryapi.MeterRegistryTestConfiguration;
+import com.sparsis.libraryapi.model.entity.Book;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs without a test transaction: the second-level cache is only filled and invalidated on commit.
+ */
+@DataJpaTest(properties = "library.second-level-cache.enabled=true")
+@Import({SecondLevelCacheConfiguration.class, MeterRegistryTestConfiguration.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class SecondLevelCacheTest {
+
+    @Autowired
+    BookRepository repository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void clearStatistics() {
+        statistics().clear();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        repository.deleteAll();
+    }
+
+    @DisplayName("Find By ID - Saved books are read from the cache")
+    @Test
+    void findByIdTest() {
+        Book book = repository.save(Book.builder().title("title").author("author").isbn("001").build());
+
+        StatementCounter.reset();
+        assertThat(repository.findById(book.getId())).map(Book::getTitle).hasValue("title");
+        assertThat(repository.findById(book.getId())).map(Book::getTitle).hasValue("title");
+
+        assertThat(StatementCounter.count()).isZero();
+        assertThat(statistics().getDomainDataRegionStatistics(Book.CACHE_REGION).getHitCount()).isEqualTo(2);
+    }
+
+    @DisplayName("Find Page - The same filter and page are read from the query cache until a write")
+    @Test
+    void findPageTest() {
+        repository.saveAll(IntStream.range(0, 3)
+                .mapToObj(i -> Book.builder().title("title-" + i).author("author").isbn("00" + i).build())
+                .collect(Collectors.toList()));
+        Example<Book> example = Example.of(Book.builder().author("author").build());
+        PageRequest pageRequest = PageRequest.of(0, 2, Sort.by("id"));
+
+        Page<Book> first = repository.findPage(example, pageRequest);
+        StatementCounter.reset();
+        Page<Book> second = repository.findPage(example, pageRequest);
+
+        assertThat(StatementCounter.count()).isZero();
+        assertThat(second.getContent()).isEqualTo(first.getContent());
+        assertThat(second.getTotalElements()).isEqualTo(3);
+        assertThat(statistics().getQueryRegionStatistics(BookRepository.QUERY_CACHE_REGION).getHitCount()).isEqualTo(2);
+
+        repository.updateTitleAndAuthor(first.getContent().get(0).getId(), "changed", "author");
+        StatementCounter.reset();
+        Page<Book> afterUpdate = repository.findPage(example, pageRequest);
+
+        assertThat(StatementCounter.count()).isPositive();
+        assertThat(afterUpdate.getContent().get(0).getTitle()).isEqualTo("changed");
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
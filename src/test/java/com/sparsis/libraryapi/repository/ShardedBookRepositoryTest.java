@@ -0,0 +1,184 @@
+package com.sparsis.libraryapi.repository;
+
+import com.sparsis.libraryapi.model.entity.Book;
+import com.sparsis.libraryapi.service.BookSaveResult;
+import com.sparsis.libraryapi.service.BookService;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+@SpringBootTest(properties = {
+        "library.sharding.enabled=true",
+        "library.sharding.shards[0].url=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+        "library.sharding.shards[1].url=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1"
+})
+public class ShardedBookRepositoryTest {
+
+    @Autowired
+    BookRepository repository;
+
+    @Autowired
+    BookService service;
+
+    @AfterEach
+    public void tearDown() {
+        repository.deleteAll();
+    }
+
+    @DisplayName("Save - Books are placed by ISBN and IDs carry the shard")
+    @Test
+    void saveTest() {
+        List<Book> books = saveBooks(10);
+
+        Assertions.assertThat(books).allSatisfy(book ->
+                Assertions.assertThat(ShardKeys.ofId(book.getId())).isEqualTo(ShardKeys.ofIsbn(book.getIsbn(), 2)));
+        Assertions.assertThat(books).extracting(book -> ShardKeys.ofId(book.getId())).contains(0, 1);
+        Assertions.assertThat(books).allSatisfy(book -> Assertions.assertThat(repository.findById(book.getId())).isPresent());
+        Assertions.assertThat(repository.existsByIsbn(books.get(9).getIsbn())).isTrue();
+        Assertions.assertThat(repository.findExistingIsbns(Arrays.asList("isbn-1", "isbn-2", "missing"))).containsOnly("isbn-1", "isbn-2");
+    }
+
+    @DisplayName("Save All - A failing shard is retried book by book, without saving the other shards' books again")
+    @Test
+    void saveAllTest() {
+        // Saved past the service, so the ISBN filter does not know it and the duplicate only fails on insert
+        String taken = isbnOnShard(1, 0);
+        repository.save(Book.builder().title("taken").author("author").isbn(taken).build());
+        List<Book> chunk = Arrays.asList(
+                Book.builder().title("a").author("author").isbn(isbnOnShard(0, 0)).build(),
+                Book.builder().title("b").author("author").isbn(isbnOnShard(1, 1)).build(),
+                Book.builder().title("c").author("author").isbn(taken).build(),
+                Book.builder().title("d").author("author").isbn(isbnOnShard(0, 1)).build());
+
+        List<BookSaveResult> results = service.saveAll(chunk);
+
+        Assertions.assertThat(results).extracting(BookSaveResult::isSaved).containsExactly(true, true, false, true);
+        Assertions.assertThat(results.get(2).getError()).isEqualTo("Duplicated ISBN");
+        Assertions.assertThat(results).extracting(result -> result.getBook().getTitle()).containsExactly("a", "b", "c", "d");
+        Assertions.assertThat(repository.count()).isEqualTo(4);
+    }
+
+    @DisplayName("Find - Pages are merged across shards")
+    @Test
+    void findTest() {
+        saveBooks(10);
+        Example<Book> example = Example.of(Book.builder().author("author").build(), ExampleMatcher.matching().withIgnoreNullValues());
+
+        Page<Book> page = repository.findAll(example, PageRequest.of(1, 3, Sort.by("title")));
+
+        Assertions.assertThat(page.getTotalElements()).isEqualTo(10);
+        Assertions.assertThat(page.getContent()).extracting(Book::getTitle).containsExactly("title-3", "title-4", "title-5");
+    }
+
+    @DisplayName("Find - Unsorted pages follow the ID order across shards")
+    @Test
+    void findUnsortedTest() {
+        List<Long> ids = saveBooks(10).stream().map(Book::getId).sorted().collect(Collectors.toList());
+
+        Page<Book> page = repository.findAll(PageRequest.of(1, 3));
+
+        Assertions.assertThat(page.getContent()).extracting(Book::getId).containsExactlyElementsOf(ids.subList(3, 6));
+        Assertions.assertThat(allPages(Sort.unsorted())).extracting(Book::getId).containsExactlyElementsOf(ids);
+    }
+
+    @DisplayName("Find - Pages sorted by a column with duplicates neither repeat nor skip books")
+    @Test
+    void findSortedByDuplicatesTest() {
+        List<Book> books = IntStream.range(0, 10)
+                .mapToObj(i -> repository.save(Book.builder().title("title-" + i).author("author-" + (i % 3)).isbn("isbn-" + i).build()))
+                .collect(Collectors.toList());
+        List<Long> expected = books.stream()
+                .sorted(Comparator.comparing(Book::getAuthor).thenComparing(Book::getId))
+                .map(Book::getId)
+                .collect(Collectors.toList());
+
+        Assertions.assertThat(allPages(Sort.by("author"))).extracting(Book::getId).containsExactlyElementsOf(expected);
+    }
+
+    @DisplayName("Find - Null values are merged where the shards put them")
+    @Test
+    void findSortedWithNullsTest() {
+        saveBooks(6);
+        // Two untitled books on each shard
+        IntStream.range(2, 6).forEach(i -> repository.save(Book.builder().author("author").isbn("untitled-" + i).build()));
+
+        List<Book> ascending = repository.findAll(Sort.by("title"));
+        List<Book> descending = repository.findAll(Sort.by(Sort.Direction.DESC, "title"));
+
+        Assertions.assertThat(ascending).extracting(Book::getTitle)
+                .containsExactly(null, null, null, null, "title-0", "title-1", "title-2", "title-3", "title-4", "title-5");
+        Assertions.assertThat(descending).extracting(Book::getTitle)
+                .containsExactly("title-5", "title-4", "title-3", "title-2", "title-1", "title-0", null, null, null, null);
+    }
+
+    @DisplayName("Find After - Keyset slices are merged across shards")
+    @Test
+    void findAfterTest() {
+        List<Long> ids = saveBooks(10).stream().map(Book::getId).sorted().collect(Collectors.toList());
+        Example<Book> example = Example.of(new Book(), ExampleMatcher.matching().withIgnoreNullValues());
+
+        Slice<Book> slice = repository.findAfter(example, ids.get(2), 4);
+
+        Assertions.assertThat(slice.getContent()).extracting(Book::getId).containsExactlyElementsOf(ids.subList(3, 7));
+        Assertions.assertThat(slice.hasNext()).isTrue();
+    }
+
+    @DisplayName("Stream All - Streams every shard")
+    @Test
+    void streamAllTest() {
+        saveBooks(10);
+
+        try(Stream<Book> books = repository.streamAll()) {
+            Assertions.assertThat(books.count()).isEqualTo(10);
+        }
+    }
+
+    @DisplayName("Count - Statements run on the shard threads count towards the caller")
+    @Test
+    void statementCountTest() {
+        StatementCounter.reset();
+
+        repository.count();
+
+        Assertions.assertThat(StatementCounter.count()).isEqualTo(2);
+    }
+
+    private static String isbnOnShard(int shard, int skip) {
+        return IntStream.iterate(0, i -> i + 1).mapToObj(i -> "chunk-" + i)
+                .filter(isbn -> ShardKeys.ofIsbn(isbn, 2) == shard)
+                .skip(skip)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private List<Book> allPages(Sort sort) {
+        List<Book> books = new ArrayList<>();
+        for(int page = 0; page < 4; page++) {
+            books.addAll(repository.findAll(PageRequest.of(page, 3, sort)).getContent());
+        }
+        return books;
+    }
+
+    private List<Book> saveBooks(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> repository.save(Book.builder().title("title-" + i).author("author").isbn("isbn-" + i).build()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,124 @@
+package com.sparsis.libraryapi.service;
+
+import com.sparsis.libraryapi.model.entity.BookChange;
+import com.sparsis.libraryapi.repository.BookChangeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BookChangeFeedTest {
+
+    BookChangeRepository repository = Mockito.mock(BookChangeRepository.class);
+
+    PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+
+    BookChangeFeed feed = new BookChangeFeed(repository, new TransactionTemplate(transactionManager),
+            Duration.ofSeconds(1), Duration.ofSeconds(10), Duration.ofSeconds(5), Duration.ofDays(7), 2);
+
+    @AfterEach
+    void tearDown() {
+        feed.shutdown();
+    }
+
+    @DisplayName("Read - Stops before a gap that a running transaction may still fill")
+    @Test
+    void readRecentGapTest() {
+        Instant now = Instant.now();
+        Mockito.when(repository.findAfter(Mockito.eq(4L), Mockito.any(Pageable.class)))
+                .thenReturn(Arrays.asList(change(5, now), change(6, now), change(8, now)));
+
+        List<BookChange> changes = feed.read(4, 100);
+
+        assertThat(changes).extracting(BookChange::getSeq).containsExactly(5L, 6L);
+    }
+
+    @DisplayName("Read - Skips a gap older than the gap timeout")
+    @Test
+    void readSettledGapTest() {
+        Instant past = Instant.now().minusSeconds(60);
+        Mockito.when(repository.findAfter(Mockito.eq(4L), Mockito.any(Pageable.class)))
+                .thenReturn(Arrays.asList(change(6, past), change(7, Instant.now())));
+
+        List<BookChange> changes = feed.read(4, 100);
+
+        assertThat(changes).extracting(BookChange::getSeq).containsExactly(6L, 7L);
+    }
+
+    @DisplayName("Read - Nothing when the next change is still missing")
+    @Test
+    void readMissingNextTest() {
+        Mockito.when(repository.findAfter(Mockito.eq(4L), Mockito.any(Pageable.class)))
+                .thenReturn(Arrays.asList(change(6, Instant.now())));
+
+        assertThat(feed.read(4, 100)).isEmpty();
+    }
+
+    @DisplayName("Write - Runs in a transaction bounded by the transaction timeout")
+    @Test
+    void writeTimeoutTest() {
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+
+        assertThat(feed.write(() -> 1)).isEqualTo(1);
+
+        Mockito.verify(transactionManager).getTransaction(definition.capture());
+        assertThat(definition.getValue().getTimeout()).isEqualTo(5);
+    }
+
+    @DisplayName("Configuration - The transaction timeout must be shorter than the gap timeout")
+    @Test
+    void transactionTimeoutTest() {
+        assertThatThrownBy(() -> new BookChangeFeed(repository, new TransactionTemplate(transactionManager),
+                Duration.ofSeconds(1), Duration.ofSeconds(10), Duration.ofSeconds(10), Duration.ofDays(7), 2))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @DisplayName("Subscribe - A consumer that blocks does not hold up the others")
+    @Test
+    void blockedSubscriberTest() throws InterruptedException {
+        Mockito.when(repository.findLastSeq()).thenReturn(1L);
+        Mockito.when(repository.findAfter(Mockito.eq(0L), Mockito.any(Pageable.class))).thenReturn(Arrays.asList(change(1, Instant.now())));
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch delivered = new CountDownLatch(1);
+
+        feed.subscribe(0, 100, batch -> {
+            blocked.countDown();
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch(InterruptedException ex) {
+                return false;
+            }
+        });
+        assertThat(blocked.await(5, TimeUnit.SECONDS)).isTrue();
+        feed.subscribe(0, 100, batch -> {
+            delivered.countDown();
+            return true;
+        });
+
+        try {
+            assertThat(delivered.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private BookChange change(long seq, Instant changedAt) {
+        return BookChange.builder().seq(seq).type(BookChange.Type.UPDATED).bookId(seq * 10).changedAt(changedAt).build();
+    }
+}
@@ -0,0 +1,62 @@
+package com.sparsis.libraryapi.service;
+
+import com.sparsis.libraryapi.model.entity.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookSearchIndexTest {
+
+    BookSearchIndex index;
+
+    @BeforeEach
+    public void setup() {
+        index = new BookSearchIndex();
+        index.index(Book.builder().id(1L).title("O Cortiço").author("Aluísio Azevedo").build());
+        index.index(Book.builder().id(2L).title("Dom Casmurro").author("Machado de Assis").build());
+        index.index(Book.builder().id(3L).title("Memórias Póstumas de Brás Cubas").author("Machado de Assis").build());
+    }
+
+    @DisplayName("Search - Case and accent folding")
+    @Test
+    void foldingTest() {
+        assertThat(index.search("CORTICO", 10)).containsExactly(1L);
+        assertThat(index.search("aluisio", 10)).containsExactly(1L);
+    }
+
+    @DisplayName("Search - Prefix match")
+    @Test
+    void prefixTest() {
+        assertThat(index.search("memo", 10)).containsExactly(3L);
+    }
+
+    @DisplayName("Search - Fuzzy match")
+    @Test
+    void fuzzyTest() {
+        assertThat(index.search("casmuro", 10)).containsExactly(2L);
+        assertThat(index.search("machdo", 10)).containsExactly(2L, 3L);
+    }
+
+    @DisplayName("Search - Every term must match and title ranks above author")
+    @Test
+    void rankingTest() {
+        index.index(Book.builder().id(4L).title("Machado").author("Someone Else").build());
+
+        assertThat(index.search("machado", 10)).containsExactly(4L, 2L, 3L);
+        assertThat(index.search("machado dom", 10)).containsExactly(2L);
+    }
+
+    @DisplayName("Index - Update and remove")
+    @Test
+    void updateAndRemoveTest() {
+        index.index(Book.builder().id(2L).title("Quincas Borba").author("Machado de Assis").build());
+        index.remove(3L);
+
+        assertThat(index.search("casmurro", 10)).isEmpty();
+        assertThat(index.search("quincas", 10)).containsExactly(2L);
+        assertThat(index.search("memorias", 10)).isEmpty();
+        assertThat(index.size()).isEqualTo(2);
+    }
+}
@@ -8,12 +8,31 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -23,12 +42,25 @@ public class BookServiceTest {
 
     BookService service;
 
+    IsbnFilter isbnFilter;
+
+    BookCache bookCache;
+
+    BookSearchIndex searchIndex;
+
     @MockBean
     BookRepository repository;
 
+    @TempDir
+    Path directory;
+
     @BeforeEach
     public void setup() {
-        this.service = new BookServiceImpl(repository);
+        this.isbnFilter = new IsbnFilter(1000, 0.01);
+        this.bookCache = new BookCache(100, Duration.ofMinutes(1));
+        this.searchIndex = new BookSearchIndex();
+        this.service = new BookServiceImpl(repository, isbnFilter, bookCache, new BookCountCache(100, Duration.ofMinutes(1)), searchIndex,
+                new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)));
     }
 
     @DisplayName("Save Book - Success")
@@ -51,12 +83,80 @@ public class BookServiceTest {
     @Test
     void saveBookWithDuplicatedIsbnTest() {
         Book book = createValidBook();
+        isbnFilter.put(book.getIsbn());
         Mockito.when(repository.existsByIsbn(book.getIsbn())).thenReturn(true);
         Throwable exception = Assertions.catchThrowable(() -> service.save(book));
         assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Duplicated ISBN");
         Mockito.verify(repository, Mockito.never()).save(book);
     }
 
+    @DisplayName("Save Book - Business Exception - Unique Constraint")
+    @Test
+    void saveBookWithDuplicatedIsbnConstraintTest() {
+        Book book = createValidBook();
+        Mockito.when(repository.save(book)).thenThrow(new DataIntegrityViolationException("UK_BOOK_ISBN"));
+        Throwable exception = Assertions.catchThrowable(() -> service.save(book));
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Duplicated ISBN");
+        Mockito.verify(repository, Mockito.never()).existsByIsbn(book.getIsbn());
+    }
+
+    @DisplayName("Save Book - Unknown ISBN skips existence query")
+    @Test
+    void saveBookWithUnknownIsbnTest() {
+        Book book = createValidBook();
+        Mockito.when(repository.save(book)).thenReturn(Book.builder().id(1L).isbn(book.getIsbn()).build());
+
+        service.save(book);
+
+        Mockito.verify(repository, Mockito.never()).existsByIsbn(book.getIsbn());
+        assertThat(isbnFilter.mightContain(book.getIsbn())).isTrue();
+    }
+
+    @DisplayName("Save Book - An ISBN in the snapshot is checked against the database")
+    @Test
+    void saveBookWithIsbnInSnapshotTest() {
+        Book book = createValidBook();
+        isbnFilter.put(book.getIsbn());
+        useSnapshot(Book.builder().id(1L).title("deleted").author("author").isbn(book.getIsbn()).build());
+        Mockito.when(repository.save(book)).thenReturn(Book.builder().id(2L).isbn(book.getIsbn()).build());
+
+        Book savedBook = service.save(book);
+
+        assertThat(savedBook.getId()).isEqualTo(2L);
+        Mockito.verify(repository).existsByIsbn(book.getIsbn());
+    }
+
+    @DisplayName("Save All - Duplicated ISBNs are rejected per record")
+    @Test
+    void saveAllWithDuplicatedIsbnTest() {
+        Book existing = createValidBook();
+        Book repeated = Book.builder().title("title2").author("author2").isbn("002").build();
+        Book repeatedAgain = Book.builder().title("title3").author("author3").isbn("002").build();
+        isbnFilter.put(existing.getIsbn());
+        Mockito.when(repository.findExistingIsbns(Collections.singleton(existing.getIsbn()))).thenReturn(Collections.singleton(existing.getIsbn()));
+
+        List<BookSaveResult> results = service.saveAll(Arrays.asList(existing, repeated, repeatedAgain));
+
+        assertThat(results).extracting(BookSaveResult::isSaved).containsExactly(false, true, false);
+        assertThat(results.get(0).getError()).isEqualTo("Duplicated ISBN");
+        Mockito.verify(repository).saveAll(Collections.singletonList(repeated));
+        assertThat(isbnFilter.mightContain(repeated.getIsbn())).isTrue();
+    }
+
+    @DisplayName("Save All - Unique Constraint falls back to single saves")
+    @Test
+    void saveAllWithConcurrentDuplicateTest() {
+        Book book = createValidBook();
+        Mockito.doThrow(new DataIntegrityViolationException("UK_BOOK_ISBN")).when(repository).flush();
+        Mockito.when(repository.save(book)).thenThrow(new DataIntegrityViolationException("UK_BOOK_ISBN"));
+
+        List<BookSaveResult> results = service.saveAll(Collections.singletonList(book));
+
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).isSaved()).isFalse();
+        assertThat(results.get(0).getError()).isEqualTo("Duplicated ISBN");
+    }
+
     @DisplayName("Find By ID - Success")
     @Test
     void findByIdSuccessTest() {
@@ -87,17 +187,188 @@ public class BookServiceTest {
         assertThat(optionalBook.isPresent()).isFalse();
     }
 
-    @DisplayName("Update - Success")
+    @DisplayName("Find All By ID - Cached books are not queried")
+    @Test
+    void findAllByIdTest() {
+        Book cached = Book.builder().id(1L).title("title1").author("author").isbn("001").build();
+        Book stored = Book.builder().id(2L).title("title2").author("author").isbn("002").build();
+        Mockito.when(repository.findById(1L)).thenReturn(Optional.of(cached));
+        Mockito.when(repository.findAllById(Arrays.asList(2L, 3L))).thenReturn(Arrays.asList(stored));
+        service.findById(1L);
+
+        List<Book> books = service.findAllById(Arrays.asList(2L, 1L, 3L, 2L));
+
+        assertThat(books).containsExactly(stored, cached);
+        Mockito.verify(repository).findAllById(Arrays.asList(2L, 3L));
+    }
+
+    @DisplayName("Find By ISBN - Normalized before the lookup")
+    @Test
+    void findByIsbnTest() {
+        Book book = Book.builder().id(1L).title("title").author("author").isbn("9780306406157").build();
+        Mockito.when(repository.findByIsbnNumber(9780306406157L)).thenReturn(Optional.of(book));
+
+        assertThat(service.findByIsbn("0-306-40615-2")).hasValue(book);
+        Assertions.assertThatThrownBy(() -> service.findByIsbn("0-306-40615-3"))
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Invalid ISBN");
+    }
+
+    @DisplayName("Find By ID - Served from cache")
+    @Test
+    void findByIdCachedTest() {
+        Long id = 1L;
+        Book book = createValidBook();
+        book.setId(id);
+        Mockito.when(repository.findById(id)).thenReturn(Optional.of(book));
+
+        service.findById(id).get().setTitle("changed by caller");
+        Optional<Book> cachedBook = service.findById(id);
+
+        assertThat(cachedBook.get().getTitle()).isEqualTo("title1");
+        Mockito.verify(repository, Mockito.times(1)).findById(id);
+        assertThat(bookCache.stats().hitCount()).isEqualTo(1);
+    }
+
+    @DisplayName("Update - Invalidates cached book")
+    @Test
+    void updateInvalidatesCacheTest() {
+        Long id = 1L;
+        Book book = createValidBook();
+        book.setId(id);
+        Book updatedBook = Book.builder().id(id).title("title2").author("author2").isbn(book.getIsbn()).build();
+        Mockito.when(repository.findById(id)).thenReturn(Optional.of(book), Optional.of(updatedBook));
+        Mockito.when(repository.updateTitleAndAuthor(id, "title2", "author2")).thenReturn(1);
+
+        service.findById(id);
+        service.update(updatedBook);
+
+        assertThat(service.findById(id).get().getTitle()).isEqualTo("title2");
+        Mockito.verify(repository, Mockito.times(2)).findById(id);
+        Mockito.verify(repository, Mockito.never()).save(Mockito.any(Book.class));
+    }
+
+    @DisplayName("Warm up - Fills the ISBN filter and keeps what writes indexed meanwhile")
+    @Test
+    void warmUpTest() {
+        Book written = Book.builder().id(1L).title("Effective Java").author("Bloch").isbn("001").build();
+        searchIndex.index(written);
+        Book stale = written.toBuilder().title("Java Concurrency").build();
+        Book other = Book.builder().id(2L).title("Refactoring").author("Fowler").isbn("002").build();
+        Mockito.when(repository.streamAll()).thenAnswer(invocation -> Stream.of(stale, other));
+
+        ((BookServiceImpl) service).warmUp();
+
+        assertThat(isbnFilter.mightContain("001")).isTrue();
+        assertThat(isbnFilter.mightContain("002")).isTrue();
+        assertThat(searchIndex.search("effective", 10)).containsExactly(1L);
+        assertThat(searchIndex.search("concurrency", 10)).isEmpty();
+        assertThat(searchIndex.search("refactoring", 10)).containsExactly(2L);
+    }
+
+    @DisplayName("Search - Books in ranking order")
+    @Test
+    void searchTest() {
+        Book first = Book.builder().id(1L).title("Java Concurrency").author("Goetz").isbn("001").build();
+        Book second = Book.builder().id(2L).title("Effective Java").author("Bloch").isbn("002").build();
+        searchIndex.index(first);
+        searchIndex.index(second);
+        Mockito.when(repository.findAllById(Mockito.anyList())).thenReturn(Arrays.asList(second, first));
+
+        List<Book> books = service.search("java goetz", 10);
+
+        assertThat(books).containsExactly(first);
+    }
+
+    @DisplayName("Update - Success, built from the request without reading the book back")
     @Test
     void updateSuccessTest() {
         Book book = createValidBook();
         book.setId(1L);
-        Mockito.when(repository.save(book)).thenReturn(book);
+        Mockito.when(repository.updateTitleAndAuthor(1L, book.getTitle(), book.getAuthor())).thenReturn(1);
 
-        Book updatedBook = service.update(book);
+        Book updatedBook = service.update(book).get();
 
         assertThat(updatedBook.getId()).isEqualTo(book.getId());
-        assertThat(updatedBook).isEqualTo(book);
+        assertThat(updatedBook.getTitle()).isEqualTo(book.getTitle());
+        assertThat(updatedBook.getAuthor()).isEqualTo(book.getAuthor());
+        assertThat(updatedBook.getVersion()).isNull();
+        Mockito.verify(repository, Mockito.never()).findById(1L);
+    }
+
+    @DisplayName("Update - Without a version, the ISBN of a cached book is kept and its version is not guessed")
+    @Test
+    void updateWithoutVersionOfCachedBookTest() {
+        Long id = 1L;
+        Book book = createValidBook().toBuilder().id(id).version(3L).build();
+        Mockito.when(repository.findById(id)).thenReturn(Optional.of(book));
+        Mockito.when(repository.updateTitleAndAuthor(id, "title2", "author2")).thenReturn(1);
+        service.findById(id);
+
+        Book updatedBook = service.update(Book.builder().id(id).title("title2").author("author2").build()).get();
+
+        assertThat(updatedBook).isEqualTo(book.toBuilder().title("title2").author("author2").version(null).build());
+        Mockito.verify(repository, Mockito.times(1)).findById(id);
+    }
+
+    @DisplayName("Update - With a version and a cached book, the new state is not read back")
+    @Test
+    void updateWithVersionOfCachedBookTest() {
+        Long id = 1L;
+        Book book = createValidBook().toBuilder().id(id).version(3L).build();
+        Mockito.when(repository.findById(id)).thenReturn(Optional.of(book));
+        Mockito.when(repository.updateTitleAndAuthor(id, "title2", "author2", 3L)).thenReturn(1);
+        service.findById(id);
+
+        Book updatedBook = service.update(Book.builder().id(id).title("title2").author("author2").version(3L).build()).get();
+
+        assertThat(updatedBook).isEqualTo(book.toBuilder().title("title2").author("author2").version(4L).build());
+        Mockito.verify(repository, Mockito.times(1)).findById(id);
+        assertThat(searchIndex.search("title2", 10)).containsExactly(id);
+    }
+
+    @DisplayName("Update - A snapshot refresh overlapping the write does not clear the dirty mark")
+    @Test
+    void updateDuringSnapshotRefreshTest() {
+        Book book = Book.builder().id(1L).title("title2").author("author2").isbn("001").build();
+        BookSnapshotStore snapshotStore = useSnapshot(createValidBook().toBuilder().id(1L).build());
+        Mockito.when(repository.updateTitleAndAuthor(1L, "title2", "author2")).thenAnswer(invocation -> {
+            // Reads the old row, as a refresh does before the UPDATE commits
+            snapshotStore.refresh();
+            return 1;
+        });
+        Mockito.when(repository.findById(1L)).thenReturn(Optional.of(book));
+
+        service.update(book);
+
+        assertThat(snapshotStore.findById(1L)).isEmpty();
+        assertThat(service.findById(1L).get().getTitle()).isEqualTo("title2");
+    }
+
+    @DisplayName("Update - Not Found")
+    @Test
+    void updateNotFoundTest() {
+        Book book = createValidBook();
+        book.setId(1L);
+
+        Optional<Book> updatedBook = service.update(book);
+
+        assertThat(updatedBook.isPresent()).isFalse();
+        Mockito.verify(repository, Mockito.never()).findById(1L);
+    }
+
+    @DisplayName("Update - Optimistic Locking Failure - Stale Version")
+    @Test
+    void updateStaleVersionTest() {
+        Book book = createValidBook();
+        book.setId(1L);
+        book.setVersion(3L);
+        Mockito.when(repository.existsById(1L)).thenReturn(true);
+
+        Throwable exception = Assertions.catchThrowable(() -> service.update(book));
+
+        assertThat(exception).isInstanceOf(OptimisticLockingFailureException.class);
+        Mockito.verify(repository).updateTitleAndAuthor(1L, book.getTitle(), book.getAuthor(), 3L);
     }
 
     @DisplayName("Update - Illegal Argument Exception - Null Book")
@@ -120,8 +391,35 @@ public class BookServiceTest {
     @Test
     void deleteSuccessTest() {
         Long id = 1L;
-        org.junit.jupiter.api.Assertions.assertDoesNotThrow(() -> service.delete(id));
-        Mockito.verify(repository, Mockito.times(1)).deleteById(id);
+        Mockito.when(repository.deleteBookById(id)).thenReturn(1);
+        boolean deleted = org.junit.jupiter.api.Assertions.assertDoesNotThrow(() -> service.delete(id));
+        assertThat(deleted).isTrue();
+        Mockito.verify(repository, Mockito.times(1)).deleteBookById(id);
+        Mockito.verify(repository, Mockito.never()).findById(id);
+    }
+
+    @DisplayName("Delete - No Row Deleted")
+    @Test
+    void deleteMissingTest() {
+        Long id = 1L;
+        Mockito.when(repository.deleteBookById(id)).thenReturn(0);
+        assertThat(service.delete(id)).isFalse();
+    }
+
+    @DisplayName("Delete - Removes ISBN from filter")
+    @Test
+    void deleteRemovesIsbnTest() {
+        Long id = 1L;
+        Book book = createValidBook();
+        book.setId(id);
+        isbnFilter.put("001");
+        Mockito.when(repository.findById(id)).thenReturn(Optional.of(book));
+        Mockito.when(repository.deleteBookById(id)).thenReturn(1);
+
+        service.findById(id);
+        service.delete(id);
+
+        assertThat(isbnFilter.mightContain("001")).isFalse();
     }
 
     @DisplayName("Delete - Not Found")
@@ -129,7 +427,100 @@ public class BookServiceTest {
     void deleteNotFoundTest() {
         Long id = null;
         org.junit.jupiter.api.Assertions.assertThrows(IllegalArgumentException.class, () -> service.delete(id));
-        Mockito.verify(repository, Mockito.never()).deleteById(id);
+        Mockito.verify(repository, Mockito.never()).deleteBookById(id);
+    }
+
+    @DisplayName("Find - Success")
+    @Test
+    @SuppressWarnings("unchecked")
+    void findSuccessTest() {
+        Book book = createValidBook();
+        Pageable pageRequest = PageRequest.of(0, 10);
+        Page<Book> page = new PageImpl<>(Arrays.asList(book), pageRequest, 1);
+
+        Mockito.when(repository.findPage(Mockito.any(Example.class), Mockito.any(Pageable.class))).thenReturn(page);
+        Page<Book> result = service.find(book, pageRequest);
+
+        assertThat(result.getTotalElements()).isEqualTo(1);
+        assertThat(result.getContent()).containsExactly(book);
+        assertThat(result.getPageable().getPageNumber()).isEqualTo(0);
+        assertThat(result.getPageable().getPageSize()).isEqualTo(10);
+    }
+
+    @DisplayName("Find After - Success")
+    @Test
+    @SuppressWarnings("unchecked")
+    void findAfterSuccessTest() {
+        Book book = createValidBook();
+        book.setId(2L);
+        Slice<Book> slice = new SliceImpl<>(Arrays.asList(book), PageRequest.of(0, 10), false);
+
+        Mockito.when(repository.findAfter(Mockito.any(Example.class), Mockito.eq(1L), Mockito.eq(10))).thenReturn(slice);
+        Slice<Book> result = service.findAfter(book, 1L, 10);
+
+        assertThat(result.getContent()).containsExactly(book);
+        assertThat(result.hasNext()).isFalse();
+    }
+
+    @DisplayName("Find Slice - Success")
+    @Test
+    @SuppressWarnings("unchecked")
+    void findSliceSuccessTest() {
+        Book book = createValidBook();
+        Pageable pageRequest = PageRequest.of(0, 10);
+
+        Mockito.when(repository.findSlice(Mockito.any(Example.class), Mockito.eq(pageRequest))).thenReturn(new SliceImpl<>(Arrays.asList(book), pageRequest, true));
+        Slice<Book> result = service.findSlice(book, pageRequest);
+
+        assertThat(result.getContent()).containsExactly(book);
+        assertThat(result.hasNext()).isTrue();
+        Mockito.verify(repository, Mockito.never()).count(Mockito.any(Example.class));
+    }
+
+    @DisplayName("Find With Approximate Count - Counts once per filter")
+    @Test
+    @SuppressWarnings("unchecked")
+    void findWithApproximateCountTest() {
+        Book book = createValidBook();
+        Pageable pageRequest = PageRequest.of(0, 1);
+
+        Mockito.when(repository.findSlice(Mockito.any(Example.class), Mockito.eq(pageRequest))).thenReturn(new SliceImpl<>(Arrays.asList(book), pageRequest, true));
+        Mockito.when(repository.count(Mockito.any(Example.class))).thenReturn(5L);
+        Page<Book> first = service.findWithApproximateCount(book, pageRequest);
+        Page<Book> second = service.findWithApproximateCount(book, pageRequest);
+
+        assertThat(first.getTotalElements()).isEqualTo(5);
+        assertThat(second.getTotalElements()).isEqualTo(5);
+        Mockito.verify(repository, Mockito.times(1)).count(Mockito.any(Example.class));
+    }
+
+    @DisplayName("Find With Approximate Count - Last page corrects the total")
+    @Test
+    @SuppressWarnings("unchecked")
+    void findWithApproximateCountLastPageTest() {
+        Book book = createValidBook();
+        Pageable firstPage = PageRequest.of(0, 2);
+        Pageable lastPage = PageRequest.of(1, 2);
+
+        Mockito.when(repository.findSlice(Mockito.any(Example.class), Mockito.eq(firstPage))).thenReturn(new SliceImpl<>(Arrays.asList(book, book), firstPage, true));
+        Mockito.when(repository.findSlice(Mockito.any(Example.class), Mockito.eq(lastPage))).thenReturn(new SliceImpl<>(Arrays.asList(book), lastPage, false));
+        Mockito.when(repository.count(Mockito.any(Example.class))).thenReturn(10L);
+        service.findWithApproximateCount(book, firstPage);
+        Page<Book> last = service.findWithApproximateCount(book, lastPage);
+        Page<Book> first = service.findWithApproximateCount(book, firstPage);
+
+        assertThat(last.getTotalElements()).isEqualTo(3);
+        assertThat(first.getTotalElements()).isEqualTo(3);
+        Mockito.verify(repository, Mockito.times(1)).count(Mockito.any(Example.class));
+    }
+
+    private BookSnapshotStore useSnapshot(Book... books) {
+        BookSnapshotStore snapshotStore = new BookSnapshotStore(repository, new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)),
+                directory.resolve("catalog.bin"), Duration.ofMinutes(5));
+        Mockito.when(repository.streamAll()).thenAnswer(invocation -> Stream.of(books));
+        snapshotStore.refresh();
+        ReflectionTestUtils.setField(service, "snapshotStore", snapshotStore);
+        return snapshotStore;
     }
 
     private Book createValidBook() {
@@ -0,0 +1,113 @@
+package com.sparsis.libraryapi.service;
+
+import com.sparsis.libraryapi.model.entity.Book;
+import com.sparsis.libraryapi.repository.BookRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BookSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @DisplayName("Find - Books are found by id and ISBN")
+    @Test
+    void findTest() throws IOException {
+        Path file = directory.resolve("catalog.bin");
+        BookSnapshot.write(file, books(1000));
+
+        BookSnapshot snapshot = BookSnapshot.open(file);
+
+        assertThat(snapshot.size()).isEqualTo(1000);
+        assertThat(snapshot.findById(2L)).hasValueSatisfying(book -> {
+            assertThat(book.getTitle()).isEqualTo("title-2");
+            assertThat(book.getAuthor()).isEqualTo("author-2");
+            assertThat(book.getIsbn()).isEqualTo("isbn-2");
+            assertThat(book.getVersion()).isEqualTo(0L);
+        });
+        assertThat(snapshot.findById(1998L)).map(Book::getIsbn).hasValue("isbn-1998");
+        assertThat(snapshot.findByIsbn("isbn-512")).map(Book::getId).hasValue(512L);
+        assertThat(LongStream.range(0, 1000).map(i -> i * 2).allMatch(id -> snapshot.findByIsbn("isbn-" + id).isPresent())).isTrue();
+    }
+
+    @DisplayName("Find - Unknown ids and ISBNs are not found")
+    @Test
+    void findMissingTest() throws IOException {
+        Path file = directory.resolve("catalog.bin");
+        BookSnapshot.write(file, books(10));
+
+        BookSnapshot snapshot = BookSnapshot.open(file);
+
+        assertThat(snapshot.findById(3L)).isEmpty();
+        assertThat(snapshot.findById(-1L)).isEmpty();
+        assertThat(snapshot.findById(20L)).isEmpty();
+        assertThat(snapshot.findByIsbn("isbn-3")).isEmpty();
+        assertThat(snapshot.findByIsbn(null)).isEmpty();
+    }
+
+    @DisplayName("Write - Null fields are kept")
+    @Test
+    void writeNullFieldsTest() throws IOException {
+        Path file = directory.resolve("catalog.bin");
+        BookSnapshot.write(file, Stream.of(Book.builder().id(1L).title("título").isbn("isbn-1").build()));
+
+        Book book = BookSnapshot.open(file).findByIsbn("isbn-1").get();
+
+        assertThat(book.getTitle()).isEqualTo("título");
+        assertThat(book.getAuthor()).isNull();
+        assertThat(book.getVersion()).isNull();
+    }
+
+    @DisplayName("Write - Books out of id order are rejected")
+    @Test
+    void writeUnorderedTest() {
+        Stream<Book> books = Stream.of(Book.builder().id(2L).build(), Book.builder().id(1L).build());
+
+        assertThatThrownBy(() -> BookSnapshot.write(directory.resolve("catalog.bin"), books))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @DisplayName("Store - Books written since the refresh are not served from the snapshot")
+    @Test
+    void storeDirtyTest() {
+        BookRepository repository = Mockito.mock(BookRepository.class);
+        Mockito.when(repository.streamAll()).thenAnswer(invocation -> books(10));
+        BookSnapshotStore store = new BookSnapshotStore(repository, new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)),
+                directory.resolve("catalog.bin"), Duration.ofMinutes(5));
+
+        assertThat(store.findById(2L)).isEmpty();
+        store.refresh();
+        assertThat(store.findById(2L)).isPresent();
+
+        store.markDirty(2L);
+        assertThat(store.findById(2L)).isEmpty();
+        assertThat(store.findByIsbn("isbn-2")).isEmpty();
+        assertThat(store.findByIsbn("isbn-4")).isPresent();
+
+        store.refresh();
+        assertThat(store.findById(2L)).isPresent();
+    }
+
+    private Stream<Book> books(int count) {
+        return LongStream.range(0, count).map(i -> i * 2).mapToObj(id -> Book.builder()
+                .id(id)
+                .version(0L)
+                .title("title-" + id)
+                .author("author-" + id)
+                .isbn("isbn-" + id)
+                .build());
+    }
+}
@@ -0,0 +1,116 @@
+package com.sparsis.libraryapi.service;
+
+import com.sparsis.libraryapi.exception.BusinessException;
+import com.sparsis.libraryapi.model.entity.Book;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BookWriteCoalescerTest {
+
+    BookService service = Mockito.mock(BookService.class);
+
+    BookWriteCoalescer coalescer = new BookWriteCoalescer(service, 3, Duration.ofSeconds(10), 100, Duration.ofSeconds(10));
+
+    ExecutorService callers = Executors.newFixedThreadPool(3);
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        callers.shutdown();
+        coalescer.shutdown();
+    }
+
+    @DisplayName("Save - Concurrent creates share one saveAll call")
+    @Test
+    @SuppressWarnings("unchecked")
+    void saveBatchTest() {
+        Mockito.when(service.saveAll(Mockito.anyList())).thenAnswer(invocation -> {
+            List<Book> books = invocation.getArgument(0);
+            Set<String> isbns = new HashSet<>();
+            return books.stream().map(book -> {
+                if(!isbns.add(book.getIsbn())) {
+                    return BookSaveResult.rejected(book, "Duplicated ISBN");
+                }
+                book.setId(Long.valueOf(book.getIsbn()));
+                return BookSaveResult.saved(book);
+            }).collect(Collectors.toList());
+        });
+
+        List<CompletableFuture<Book>> saves = Stream.of("001", "001", "003")
+                .map(isbn -> CompletableFuture.supplyAsync(() -> coalescer.save(createBook(isbn)), callers))
+                .collect(Collectors.toList());
+        List<Object> results = saves.stream()
+                .map(save -> save.handle((book, ex) -> book != null ? book.getId() : ex.getCause()).join())
+                .collect(Collectors.toList());
+
+        ArgumentCaptor<List<Book>> batch = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(service).saveAll(batch.capture());
+        assertThat(batch.getValue()).hasSize(3);
+        assertThat(results.get(2)).isEqualTo(3L);
+        assertThat(results.subList(0, 2)).contains(1L).hasAtLeastOneElementOfType(BusinessException.class);
+    }
+
+    @DisplayName("Save - Rejected once the coalescer is shut down")
+    @Test
+    void saveAfterShutdownTest() throws InterruptedException {
+        coalescer.shutdown();
+
+        assertThatThrownBy(() -> coalescer.save(createBook("001")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("stopped");
+        Mockito.verifyNoInteractions(service);
+    }
+
+    @DisplayName("Save - Fails instead of waiting when the flusher dies")
+    @Test
+    void saveAfterFlusherErrorTest() {
+        BookWriteCoalescer coalescer = new BookWriteCoalescer(service, 1, Duration.ofMillis(1), 100, Duration.ofMinutes(1));
+        Mockito.when(service.saveAll(Mockito.anyList())).thenThrow(new StackOverflowError());
+
+        long started = System.nanoTime();
+        assertThatThrownBy(() -> coalescer.save(createBook("001"))).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> coalescer.save(createBook("002"))).isInstanceOf(IllegalStateException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(10));
+    }
+
+    @DisplayName("Save - Waits at most the timeout for the commit")
+    @Test
+    void saveTimeoutTest() throws InterruptedException {
+        BookWriteCoalescer coalescer = new BookWriteCoalescer(service, 1, Duration.ofMillis(1), 100, Duration.ofMillis(200));
+        CountDownLatch commit = new CountDownLatch(1);
+        Mockito.when(service.saveAll(Mockito.anyList())).thenAnswer(invocation -> {
+            commit.await();
+            return Collections.emptyList();
+        });
+
+        try {
+            assertThatThrownBy(() -> coalescer.save(createBook("001")))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("not saved within");
+        } finally {
+            commit.countDown();
+            coalescer.shutdown();
+        }
+    }
+
+    private Book createBook(String isbn) {
+        return Book.builder().title("title1").author("author1").isbn(isbn).build();
+    }
+}
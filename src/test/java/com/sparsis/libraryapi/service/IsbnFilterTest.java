@@ -0,0 +1,44 @@
+package com.sparsis.libraryapi.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IsbnFilterTest {
+
+    @DisplayName("Might Contain - Put ISBNs are always found")
+    @Test
+    void putIsbnIsFoundTest() {
+        IsbnFilter filter = new IsbnFilter(10000, 0.01);
+        IntStream.range(0, 10000).forEach(i -> filter.put("isbn-" + i));
+
+        assertThat(IntStream.range(0, 10000).allMatch(i -> filter.mightContain("isbn-" + i))).isTrue();
+    }
+
+    @DisplayName("Might Contain - False positive rate stays near configuration")
+    @Test
+    void falsePositiveRateTest() {
+        IsbnFilter filter = new IsbnFilter(10000, 0.01);
+        IntStream.range(0, 10000).forEach(i -> filter.put("isbn-" + i));
+
+        long falsePositives = IntStream.range(0, 10000).filter(i -> filter.mightContain("other-" + i)).count();
+
+        assertThat(falsePositives).isLessThan(300);
+    }
+
+    @DisplayName("Remove - ISBN is no longer found")
+    @Test
+    void removeTest() {
+        IsbnFilter filter = new IsbnFilter(1000, 0.01);
+        filter.put("001");
+        filter.put("002");
+
+        filter.remove("001");
+
+        assertThat(filter.mightContain("001")).isFalse();
+        assertThat(filter.mightContain("002")).isTrue();
+    }
+}
@@ -0,0 +1,47 @@
+package com.sparsis.libraryapi.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IsbnIndexTest {
+
+    private static final long FIRST_ISBN = 9780000000000L;
+
+    @DisplayName("Get - Put ISBNs are found beyond the expected size")
+    @Test
+    void putTest() {
+        IsbnIndex index = new IsbnIndex(16);
+        LongStream.range(0, 10000).forEach(i -> index.put(FIRST_ISBN + i, i));
+
+        assertThat(index.size()).isEqualTo(10000);
+        assertThat(LongStream.range(0, 10000).allMatch(i -> index.get(FIRST_ISBN + i) == i)).isTrue();
+        assertThat(index.get(FIRST_ISBN - 1)).isEqualTo(IsbnIndex.NO_ID);
+    }
+
+    @DisplayName("Remove - Other ISBNs stay reachable")
+    @Test
+    void removeTest() {
+        IsbnIndex index = new IsbnIndex(16);
+        LongStream.range(0, 1000).forEach(i -> index.put(FIRST_ISBN + i, i));
+
+        LongStream.range(0, 1000).filter(i -> i % 3 == 0).forEach(i -> index.remove(FIRST_ISBN + i, i));
+
+        assertThat(LongStream.range(0, 1000).allMatch(i -> index.get(FIRST_ISBN + i) == (i % 3 == 0 ? IsbnIndex.NO_ID : i))).isTrue();
+    }
+
+    @DisplayName("Remove - A newer book with the same ISBN is kept")
+    @Test
+    void removeReplacedTest() {
+        IsbnIndex index = new IsbnIndex(16);
+        index.put(FIRST_ISBN, 1L);
+        index.put(FIRST_ISBN, 2L);
+
+        index.remove(FIRST_ISBN, 1L);
+
+        assertThat(index.get(FIRST_ISBN)).isEqualTo(2L);
+    }
+}